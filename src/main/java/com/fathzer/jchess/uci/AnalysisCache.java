@@ -0,0 +1,204 @@
+package com.fathzer.jchess.uci;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import com.fathzer.jchess.uci.memory.Shrinkable;
+import com.fathzer.jchess.uci.persistence.Persistable;
+
+/** A bounded cache of search results.
+ * <br>Results are keyed by engine (the session's key also contains the values of the engine's options), normalized position (the move counters of the FEN are ignored) and the search limits that change the meaning of the result
+ * (<i>searchmoves</i> and <i>mate</i>). The depth is not part of the key: for a given key, the cache keeps the deepest result and it can answer any request with a lower depth.
+ * <br>When the cache is full, the least recently used entry is evicted.
+ * <br>When the heap is under pressure, the {@link com.fathzer.jchess.uci.memory.MemoryGovernor} can reduce its capacity.
+ * <br>Its content can be saved in a {@link com.fathzer.jchess.uci.persistence.CacheFile}.
+ * <br>This class is thread safe.
+ */
+public class AnalysisCache implements Shrinkable, Persistable {
+	private final Map<String, BestMoveReply> map = new LinkedHashMap<>(16, 0.75f, true);
+	private int capacity;
+	private double sizeRatio = 1.0;
+	
+	/** Constructor.
+	 * @param capacity The maximum number of entries of the cache.
+	 * @throws IllegalArgumentException if capacity is not strictly positive
+	 */
+	public AnalysisCache(int capacity) {
+		setCapacity(capacity);
+	}
+
+	/** Gets the result stored for a search.
+	 * @param engineId The id of the engine
+	 * @param fen The position to search
+	 * @param options The search options
+	 * @return The stored result (it can be computed with a lower depth than the one requested by options)
+	 */
+	public synchronized Optional<BestMoveReply> get(String engineId, String fen, GoOptions options) {
+		return Optional.ofNullable(map.get(getKey(engineId, fen, options)));
+	}
+	
+	/** Stores the result of a search.
+	 * <br>The result is ignored if its depth is unknown or if the cache already contains a deeper result.
+	 * @param engineId The id of the engine
+	 * @param fen The position searched
+	 * @param options The search options
+	 * @param reply The search result
+	 */
+	public synchronized void put(String engineId, String fen, GoOptions options, BestMoveReply reply) {
+		if (reply.getDepth()<=0) {
+			return;
+		}
+		final String key = getKey(engineId, fen, options);
+		final BestMoveReply previous = map.get(key);
+		if (previous==null || previous.getDepth()<=reply.getDepth()) {
+			map.put(key, reply);
+			trim();
+		}
+	}
+	
+	/** Tests whether a stored result can be used as the result of a search.
+	 * <br>This is only possible if the search is limited by depth only and the stored result is at least as deep as requested.
+	 * @param options The search options
+	 * @param reply The stored result
+	 * @return true if <i>reply</i> can be used as the search result.
+	 */
+	public static boolean canAnswer(GoOptions options, BestMoveReply reply) {
+		return isDepthLimitedOnly(options) && reply.getDepth()>=options.getDepth();
+	}
+	
+	static boolean isDepthLimitedOnly(GoOptions options) {
+		final GoOptions.TimeOptions time = options.getTimeOptions();
+		return options.getDepth()>0 && options.getNodes()==0 && !options.isPonder() && !time.isInfinite() && time.getMoveTimeMs()==0 &&
+				time.getWhiteClock().getRemainingMs()==0 && time.getBlackClock().getRemainingMs()==0;
+	}
+	
+	static String getKey(String engineId, String fen, GoOptions options) {
+		final StringBuilder builder = new StringBuilder(engineId).append('|').append(normalize(fen)).append('|').append(options.getMate());
+		if (!options.getMoveToSearch().isEmpty()) {
+			builder.append('|').append(options.getMoveToSearch().stream().map(UCIMove::toString).sorted().collect(Collectors.joining(" ")));
+		}
+		return builder.toString();
+	}
+
+	/** Removes the move counters from a FEN.
+	 * @param fen A position in FEN format
+	 * @return The position without the half move and full move counters
+	 */
+	static String normalize(String fen) {
+		return Arrays.stream(fen.trim().split(" +")).limit(4).collect(Collectors.joining(" "));
+	}
+	
+	/** Removes all the entries of the cache.
+	 */
+	public synchronized void clear() {
+		map.clear();
+	}
+	
+	/** Gets the number of entries in the cache.
+	 * @return a positive or null int
+	 */
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/** Gets the maximum number of entries of the cache.
+	 * <br>The number of entries may be lower if the cache was shrunk (see {@link #setSizeRatio(double)}).
+	 * @return a strictly positive int
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/** Sets the maximum number of entries of the cache.
+	 * <br>If the cache contains more entries than the new capacity, least recently used entries are evicted.
+	 * @param capacity The new capacity
+	 * @throws IllegalArgumentException if capacity is not strictly positive
+	 */
+	public synchronized void setCapacity(int capacity) {
+		if (capacity<=0) {
+			throw new IllegalArgumentException("Capacity should be strictly positive");
+		}
+		this.capacity = capacity;
+		trim();
+	}
+
+	@Override
+	public synchronized void setSizeRatio(double ratio) {
+		this.sizeRatio = ratio;
+		trim();
+	}
+
+	@Override
+	public String getPersistenceId() {
+		return "analysis";
+	}
+
+	@Override
+	public int getPersistenceVersion() {
+		return 1;
+	}
+
+	@Override
+	public synchronized void save(DataOutput out) throws IOException {
+		out.writeInt(map.size());
+		// Entries are saved from the least recently used to the most recently used one
+		for (Map.Entry<String, BestMoveReply> entry : map.entrySet()) {
+			final BestMoveReply reply = entry.getValue();
+			writeString(out, entry.getKey());
+			writeString(out, reply.getPrincipalVariation().stream().map(UCIMove::toString).collect(Collectors.joining(" ")));
+			out.writeLong(reply.getNodes());
+			out.writeInt(reply.getDepth());
+			out.writeBoolean(reply.getScore().isPresent());
+			out.writeInt(reply.getScore().orElse(0));
+		}
+	}
+
+	@Override
+	public synchronized void load(ByteBuffer data) {
+		final int size = data.getInt();
+		for (int i = 0; i < size; i++) {
+			final String key = readString(data);
+			final List<UCIMove> pv = Arrays.stream(readString(data).split(" ")).map(UCIMove::from).collect(Collectors.toList());
+			final long nodes = data.getLong();
+			final int depth = data.getInt();
+			final boolean hasScore = data.get()!=0;
+			final int score = data.getInt();
+			map.put(key, new BestMoveReply(pv, nodes, depth, hasScore ? score : null));
+		}
+		trim();
+	}
+	
+	private static void writeString(DataOutput out, String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(ByteBuffer data) {
+		final int length = data.getInt();
+		if (length<0 || length>data.remaining()) {
+			throw new IllegalArgumentException("Invalid string length "+length);
+		}
+		final byte[] bytes = new byte[length];
+		data.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void trim() {
+		final Iterator<Map.Entry<String, BestMoveReply>> iterator = map.entrySet().iterator();
+		final int max = Math.max(1, (int)(capacity*sizeRatio));
+		while (map.size()>max) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+}
@@ -2,25 +2,36 @@ package com.fathzer.jchess.uci;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
+/** The manager of the tasks executed in the background of the UCI interface.
+ * <br>Tasks and the actions submitted with {@link #runWhenIdle(Runnable)} are executed one after the other, in submission order.
+ * <br>Except {@link #stop()}, methods of this class should always be called by the same thread.
+ */
 class BackgroundTaskManager implements AutoCloseable {
-	private final ExecutorService exec = Executors.newFixedThreadPool(1);
+	private final ExecutorService exec = Executors.newFixedThreadPool(1, ThreadFactories.get("uci-background"));
 	private final AtomicReference<Runnable> stopper = new AtomicReference<>();
+	private final AtomicInteger pending = new AtomicInteger();
 	private final Consumer<Exception> logger;
 	
 	public BackgroundTaskManager(Consumer<Exception> logger) {
 		this.logger = logger;
 	}
 	
+	/** Submits a stoppable task.
+	 * @param task The task
+	 * @param stopTask The task that stops the task
+	 * @return false if the task was rejected because another stoppable task is running and not stopped.
+	 */
 	boolean doBackground(Runnable task, Runnable stopTask) {
 		final boolean result = this.stopper.compareAndSet(null, stopTask);
 		if (result) {
-			exec.submit(() -> {
+			submit(() -> {
 				try {
 					task.run();
-					this.stopper.set(null);
+					this.stopper.compareAndSet(stopTask, null);
 				} catch (Exception e) {
 					logger.accept(e);
 					stop();
@@ -30,10 +41,65 @@ class BackgroundTaskManager implements AutoCloseable {
 		return result;
 	}
 	
+	/** Runs an action when all previously submitted tasks are completed.
+	 * <br>If nothing is running, the action is executed immediately in the current thread,
+	 * otherwise it is executed in the background thread, after the previously submitted tasks.
+	 * <br>This allows a command that changes the engine's state (a new position for instance) to be processed while a search is running
+	 * without changing the position searched.
+	 * @param action The action to run
+	 */
+	void runWhenIdle(Runnable action) {
+		if (pending.get()==0) {
+			action.run();
+		} else {
+			submit(() -> {
+				try {
+					action.run();
+				} catch (Exception e) {
+					logger.accept(e);
+				}
+			});
+		}
+	}
+	
+	private void submit(Runnable task) {
+		pending.incrementAndGet();
+		exec.submit(() -> {
+			try {
+				task.run();
+			} finally {
+				pending.decrementAndGet();
+			}
+		});
+	}
+	
+	/** Declares a task as no more stoppable.
+	 * <br>A task can call this method when its work is done, but it still has things to do (like sending its result).
+	 * Another stoppable task can then be accepted by {@link #doBackground(Runnable, Runnable)}; it will be executed after the current one.
+	 * @param stopTask The task's stopper
+	 */
+	void release(Runnable stopTask) {
+		this.stopper.compareAndSet(stopTask, null);
+	}
+	
+	/** Checks whether a task is currently executed or waiting for execution.
+	 * @return true if a task is running
+	 */
+	boolean isRunning() {
+		return pending.get()>0;
+	}
+	
 	/** Stops the currently executed task
 	 * @return true if a task was executed.
 	 */
 	boolean stop() {
+		return stopTask()!=null;
+	}
+	
+	/** Stops the currently executed task
+	 * @return The stopper of the task that was executed, null if no task was executed.
+	 */
+	Runnable stopTask() {
 		final Runnable stopTask = stopper.getAndSet(null);
 		if (stopTask!=null) {
 			try {
@@ -42,7 +108,7 @@ class BackgroundTaskManager implements AutoCloseable {
 				logger.accept(e);
 			}
 		}
-		return stopTask!=null;
+		return stopTask;
 	}
 	
 	@Override
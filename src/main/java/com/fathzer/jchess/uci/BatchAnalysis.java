@@ -0,0 +1,288 @@
+package com.fathzer.jchess.uci;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/** A batch analysis of positions using a pool of engine instances.
+ * <br>Each position is searched by one engine instance with fixed limits, results are sent as soon as they are available, in input order or not.
+ */
+class BatchAnalysis extends LongRunningTask<Integer> {
+	/** A position to analyze.
+	 */
+	static class Entry {
+		private final int index;
+		private final String id;
+		private final Position position;
+		
+		Entry(int index, String id, Position position) {
+			this.index = index;
+			this.id = id;
+			this.position = position;
+		}
+
+		int getIndex() {
+			return index;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		Position getPosition() {
+			return position;
+		}
+	}
+	
+	private final List<Entry> entries;
+	private final Supplier<Engine> engineSupplier;
+	private final List<String> goOptions;
+	private final int parallelism;
+	private final boolean ordered;
+	private final boolean json;
+	private final Consumer<String> out;
+	private final Set<LongRunningTask<BestMoveReply>> running = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private final Map<Integer, String> pending = new HashMap<>();
+	private int nextIndex;
+
+	/** Constructor.
+	 * @param entries The positions to analyze
+	 * @param engineSupplier A supplier of engine instances (it will be called at most <i>parallelism</i> times).
+	 * @param goOptions The limits of every search (for example depth, 10)
+	 * @param parallelism The number of engines that work in parallel
+	 * @param ordered true to send the results in the positions order, false to send them as soon as they are available
+	 * @param json true to send results as JSON records
+	 * @param out Where to send the results
+	 */
+	BatchAnalysis(List<Entry> entries, Supplier<Engine> engineSupplier, List<String> goOptions, int parallelism, boolean ordered, boolean json, Consumer<String> out) {
+		this.entries = entries;
+		this.engineSupplier = engineSupplier;
+		this.goOptions = goOptions;
+		this.parallelism = Math.min(parallelism, Math.max(1, entries.size()));
+		this.ordered = ordered;
+		this.json = json;
+		this.out = out;
+	}
+
+	/** Reads a position file.
+	 * <br>Each non empty line that does not start with # is a position. It can be a FEN, an <a href="https://www.chessprogramming.org/Extended_Position_Description">EPD</a>
+	 * (the <i>id</i> operation, if any, is used as the position's id), or the arguments of a UCI position command (for example <i>startpos moves e2e4 e7e5</i>),
+	 * which allows positions extracted from PGN files to be analyzed.
+	 * @param reader The reader to read
+	 * @return The positions contained in the file
+	 * @throws IOException If an error occurs while reading the file
+	 * @throws IllegalArgumentException If a line is not a valid position
+	 */
+	static List<Entry> read(Reader reader) throws IOException {
+		final List<Entry> result = new ArrayList<>();
+		final BufferedReader lines = new BufferedReader(reader);
+		int lineNumber = 0;
+		for (String line = lines.readLine(); line!=null; line = lines.readLine()) {
+			lineNumber++;
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				try {
+					result.add(parse(result.size(), line));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Invalid position at line "+lineNumber+": "+line, e);
+				}
+			}
+		}
+		return result;
+	}
+	
+	private static Entry parse(int index, String line) {
+		String[] tokens = line.split(" +");
+		if ("position".equals(tokens[0])) {
+			tokens = Arrays.copyOfRange(tokens, 1, tokens.length);
+		}
+		if ("startpos".equals(tokens[0]) || "fen".equals(tokens[0])) {
+			return new Entry(index, null, Position.parse(tokens));
+		}
+		if (tokens.length<4) {
+			throw new IllegalArgumentException();
+		}
+		if (tokens.length>=6 && isNumber(tokens[4]) && isNumber(tokens[5])) {
+			// A FEN, maybe followed by moves
+			return new Entry(index, null, Position.parse(("fen "+line).split(" +")));
+		}
+		// An EPD
+		final String fen = String.join(" ", Arrays.copyOf(tokens, 4))+" 0 1";
+		final String operations = Arrays.stream(tokens).skip(4).collect(Collectors.joining(" "));
+		return new Entry(index, getId(operations), new Position(fen, new ArrayList<>()));
+	}
+	
+	private static boolean isNumber(String token) {
+		return !token.isEmpty() && token.chars().allMatch(Character::isDigit);
+	}
+	
+	private static String getId(String epdOperations) {
+		for (String operation : epdOperations.split(";")) {
+			final String op = operation.trim();
+			if (op.startsWith("id ")) {
+				final String id = op.substring(3).trim();
+				return id.length()>1 && id.startsWith("\"") && id.endsWith("\"") ? id.substring(1, id.length()-1) : id;
+			}
+		}
+		return null;
+	}
+
+	/** Analyzes the positions.
+	 * @return The number of positions analyzed
+	 */
+	@Override
+	public Integer get() {
+		final BlockingQueue<Engine> engines = new ArrayBlockingQueue<>(parallelism);
+		final ExecutorService exec = Executors.newFixedThreadPool(parallelism, ThreadFactories.get("uci-analyze"));
+		try {
+			final List<Future<Boolean>> results = new ArrayList<>(entries.size());
+			for (Entry entry : entries) {
+				results.add(exec.submit(() -> analyze(entry, engines)));
+			}
+			int count = 0;
+			for (Future<Boolean> result : results) {
+				if (Boolean.TRUE.equals(result.get())) {
+					count++;
+				}
+			}
+			return count;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			exec.shutdownNow();
+			engines.forEach(Engine::release);
+		}
+	}
+	
+	private boolean analyze(Entry entry, BlockingQueue<Engine> engines) {
+		if (cancelled.get()) {
+			send(entry.getIndex(), null);
+			return false;
+		}
+		Engine engine = engines.poll();
+		if (engine==null) {
+			engine = engineSupplier.get();
+		}
+		String result = null;
+		try {
+			engine.newGame();
+			entry.getPosition().setTo(engine);
+			final long start = System.nanoTime();
+			final LongRunningTask<BestMoveReply> task = engine.go(new GoOptions(goOptions));
+			running.add(task);
+			final BestMoveReply reply;
+			try {
+				if (cancelled.get()) {
+					task.stop();
+				}
+				reply = task.get();
+			} finally {
+				running.remove(task);
+			}
+			result = format(entry, reply, (System.nanoTime()-start)/1_000_000);
+			return true;
+		} finally {
+			engines.add(engine);
+			send(entry.getIndex(), result);
+		}
+	}
+
+	private synchronized void send(int index, String result) {
+		if (!ordered) {
+			if (result!=null) {
+				out.accept(result);
+			}
+			return;
+		}
+		pending.put(index, result);
+		while (pending.containsKey(nextIndex)) {
+			final String line = pending.remove(nextIndex);
+			if (line!=null) {
+				out.accept(line);
+			}
+			nextIndex++;
+		}
+	}
+	
+	String format(Entry entry, BestMoveReply reply, long durationMs) {
+		final String ponder = reply.getPonderMove().map(UCIMove::toString).orElse(null);
+		if (json) {
+			final StringBuilder b = new StringBuilder("{\"index\":").append(entry.getIndex());
+			if (entry.getId()!=null) {
+				b.append(",\"id\":").append(quote(entry.getId()));
+			}
+			b.append(",\"position\":").append(quote(entry.getPosition().toString()));
+			b.append(",\"bestmove\":").append(quote(reply.getMove().toString()));
+			if (ponder!=null) {
+				b.append(",\"ponder\":").append(quote(ponder));
+			}
+			if (reply.getDepth()>0) {
+				b.append(",\"depth\":").append(reply.getDepth());
+			}
+			reply.getScore().ifPresent(s -> b.append(",\"score\":").append(s));
+			if (reply.getNodes()>0) {
+				b.append(",\"nodes\":").append(reply.getNodes());
+			}
+			return b.append(",\"timeMs\":").append(durationMs).append('}').toString();
+		} else {
+			final StringBuilder b = new StringBuilder("analysis ").append(entry.getIndex());
+			if (entry.getId()!=null) {
+				b.append(" id ").append(entry.getId());
+			}
+			b.append(" bestmove ").append(reply.getMove());
+			if (ponder!=null) {
+				b.append(" ponder ").append(ponder);
+			}
+			if (reply.getDepth()>0) {
+				b.append(" depth ").append(reply.getDepth());
+			}
+			reply.getScore().ifPresent(s -> b.append(" score ").append(s));
+			if (reply.getNodes()>0) {
+				b.append(" nodes ").append(reply.getNodes());
+			}
+			return b.append(" time ").append(durationMs).toString();
+		}
+	}
+	
+	private static String quote(String value) {
+		final StringBuilder b = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c=='"' || c=='\\') {
+				b.append('\\').append(c);
+			} else if (c<' ') {
+				b.append(String.format("\\u%04x", (int)c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		cancelled.set(true);
+		running.forEach(LongRunningTask::stop);
+	}
+}
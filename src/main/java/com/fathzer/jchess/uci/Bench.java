@@ -0,0 +1,75 @@
+package com.fathzer.jchess.uci;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** A benchmark of the full search.
+ * <br>It searches a fixed set of positions with fixed limits. The total number of nodes is a signature of the search behavior:
+ * as long as the search is deterministic, a change that does not modify the search should keep this signature.
+ * <br>A new game is started before each position, so that no result depends on the previous searches.
+ */
+class Bench extends LongRunningTask<Long> {
+	/** The positions searched by default. */
+	static final List<String> POSITIONS = Collections.unmodifiableList(Arrays.asList(
+			Position.START_FEN,
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+			"8/k7/3p4/p2P1p2/P2P1P2/8/8/K7 w - - 0 1",
+			"6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"));
+	
+	private final Engine engine;
+	private final List<String> positions;
+	private final GoOptions options;
+	private final Consumer<String> out;
+	private volatile LongRunningTask<BestMoveReply> current;
+	private boolean nodesReported = true;
+
+	Bench(Engine engine, List<String> positions, GoOptions options, Consumer<String> out) {
+		this.engine = engine;
+		this.positions = positions;
+		this.options = options;
+		this.out = out;
+	}
+
+	/** Runs the benchmark.
+	 * @return The total number of nodes searched.
+	 */
+	@Override
+	public Long get() {
+		long nodes = 0;
+		for (int i = 0; i < positions.size() && !isStopped(); i++) {
+			engine.newGame();
+			engine.setStartPosition(positions.get(i));
+			current = engine.go(options);
+			if (isStopped()) {
+				current.stop();
+			}
+			final BestMoveReply reply = current.get();
+			nodesReported = nodesReported && reply.getNodes()>0;
+			nodes += reply.getNodes();
+			out.accept("bench position "+(i+1)+"/"+positions.size()+" bestmove "+reply.getMove()+" nodes "+reply.getNodes());
+		}
+		return nodes;
+	}
+	
+	/** Checks whether the engine reported the number of nodes of all its searches.
+	 * @return false if at least one search returned an unknown number of nodes
+	 */
+	boolean isNodesReported() {
+		return nodesReported;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		final LongRunningTask<BestMoveReply> task = current;
+		if (task!=null) {
+			task.stop();
+		}
+	}
+}
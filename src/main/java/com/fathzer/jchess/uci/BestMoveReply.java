@@ -1,17 +1,66 @@
 package com.fathzer.jchess.uci;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 public class BestMoveReply {
 	private final UCIMove move;
 	private final UCIMove ponderMove;
+	private final long nodes;
+	private final int depth;
+	private final Integer score;
+	private final List<UCIMove> principalVariation;
 	
 	public BestMoveReply(UCIMove move) {
 		this(move, null);
 	}
 	public BestMoveReply(UCIMove move, UCIMove ponderMove) {
+		this(move, ponderMove, 0);
+	}
+	/** Constructor.
+	 * @param move The best move
+	 * @param ponderMove The ponder move (null if there's no ponder move)
+	 * @param nodes The number of nodes searched to find the move (0 if unknown)
+	 */
+	public BestMoveReply(UCIMove move, UCIMove ponderMove, long nodes) {
+		this(move, ponderMove, nodes, 0, null);
+	}
+	/** Constructor.
+	 * @param move The best move
+	 * @param ponderMove The ponder move (null if there's no ponder move)
+	 * @param nodes The number of nodes searched to find the move (0 if unknown)
+	 * @param depth The depth completely searched to find the move (0 if unknown)
+	 * @param score The score of the move from the engine's point of view (null if unknown)
+	 */
+	public BestMoveReply(UCIMove move, UCIMove ponderMove, long nodes, int depth, Integer score) {
 		this.move = move;
 		this.ponderMove = ponderMove;
+		this.nodes = nodes;
+		this.depth = depth;
+		this.score = score;
+		this.principalVariation = null;
+	}
+	/** Constructor.
+	 * @param principalVariation The principal variation, its first move is the best move and its second move, if any, is the ponder move.
+	 * @param nodes The number of nodes searched to find the move (0 if unknown)
+	 * @param depth The depth completely searched to find the move (0 if unknown)
+	 * @param score The score of the move from the engine's point of view (null if unknown)
+	 * @throws IllegalArgumentException if the principal variation is empty
+	 */
+	public BestMoveReply(List<UCIMove> principalVariation, long nodes, int depth, Integer score) {
+		if (principalVariation.isEmpty()) {
+			throw new IllegalArgumentException("Principal variation is empty");
+		}
+		this.move = principalVariation.get(0);
+		this.ponderMove = principalVariation.size()>1 ? principalVariation.get(1) : null;
+		this.nodes = nodes;
+		this.depth = depth;
+		this.score = score;
+		this.principalVariation = Collections.unmodifiableList(new ArrayList<>(principalVariation));
 	}
 	public UCIMove getMove() {
 		return move;
@@ -19,4 +68,31 @@ public class BestMoveReply {
 	public Optional<UCIMove> getPonderMove() {
 		return Optional.ofNullable(ponderMove);
 	}
+	/** Gets the principal variation.
+	 * @return The principal variation if it was passed to the constructor, the best move followed by the ponder move (if any) if not.
+	 */
+	public List<UCIMove> getPrincipalVariation() {
+		if (principalVariation!=null) {
+			return principalVariation;
+		}
+		return ponderMove==null ? Collections.singletonList(move) : Arrays.asList(move, ponderMove);
+	}
+	/** Gets the number of nodes searched to find the move.
+	 * @return 0 if unknown
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+	/** Gets the depth completely searched to find the move.
+	 * @return 0 if unknown
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	/** Gets the score of the move.
+	 * @return The score, an empty optional if unknown
+	 */
+	public OptionalInt getScore() {
+		return score==null ? OptionalInt.empty() : OptionalInt.of(score);
+	}
 }
@@ -44,6 +44,14 @@ public interface Engine {
 		// By default engine has no option
 		return new Option[0];
 	}
+	/** Releases the large structures (hash tables, neural network weights, ...) of the engine.
+	 * <br>This method is called when another engine is selected with the <i>engine</i> command. If the engine is selected again,
+	 * {@link #setStartPosition(String)} is called before it is used, but options are not set again.
+	 * <br>The default implementation does nothing.
+	 */
+	default void release() {
+		// Does nothing by default
+	}
 	/** Sets the start position.
 	 * @param fen The start position in the fen format.
 	 */
@@ -0,0 +1,15 @@
+package com.fathzer.jchess.uci;
+
+import java.util.function.Supplier;
+
+/** A factory of engines.
+ * <br>Engines registered through a factory are only instantiated when they are selected by the <i>engine</i> command.
+ * <br>Factories can be discovered with the {@link java.util.ServiceLoader} mechanism (see {@link UCI#loadEngineFactories()}).
+ * Every call to {@link #get()} should return a new engine instance.
+ */
+public interface EngineFactory extends Supplier<Engine> {
+	/** Gets the id of the engines built by this factory.
+	 * @return a non null String, it should be equal to the {@link Engine#getId()} of the built engines
+	 */
+	String getId();
+}
@@ -0,0 +1,661 @@
+package com.fathzer.jchess.uci;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.fathzer.jchess.uci.jfr.PositionEvent;
+import com.fathzer.jchess.uci.jfr.SearchEvent;
+import com.fathzer.jchess.uci.jfr.StopEvent;
+import com.fathzer.jchess.uci.memory.MemoryGovernor;
+import com.fathzer.jchess.uci.memory.Shrinkable;
+import com.fathzer.jchess.uci.metrics.ResourceUsage;
+import com.fathzer.jchess.uci.metrics.UCIMetrics;
+import com.fathzer.jchess.uci.persistence.CacheFile;
+import com.fathzer.jchess.uci.persistence.Persistable;
+import com.fathzer.jchess.uci.option.Option;
+
+/** A typed session over an {@link Engine}.
+ * <br>This class is the in-process equivalent of the UCI text protocol, it is used by {@link UCI} and can directly be used by applications that embed engines
+ * in order to avoid the cost of building and parsing text commands.
+ * <br>As with the UCI protocol, commands received during a search (position, new game, etc...) are applied after the search is completed, so the
+ * searched position never changes during a search.
+ * <br>The methods of this class should be called by a single thread (except {@link #stop()}, which can be called by any thread).
+ */
+public class EngineSession implements AutoCloseable {
+	private static final String THREADS = "Threads";
+	/** The number of moves the remaining time is supposed to be shared between when the go command has no movestogo */
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	/** The number of positions kept in the game history */
+	private static final int HISTORY_SIZE = 1024;
+
+	private final BackgroundTaskManager backTasks;
+	private final UCIMetrics metrics = new UCIMetrics();
+	private final GameHistory history = new GameHistory(HISTORY_SIZE);
+	private final NodesBudget nodesBudget = new NodesBudget();
+	private final InstantReplies instantReplies = new InstantReplies();
+	private final ResourceAccounting resources = new ResourceAccounting();
+	private volatile Engine engine;
+	private Map<String, Option<?>> options;
+	private AnalysisCache analysisCache;
+	private MemoryGovernor memoryGovernor;
+	private CacheFile cacheFile;
+	private volatile Position position;
+	private volatile Consumer<BestMoveReply> infoListener;
+	private volatile Consumer<BestMoveReply> bestMoveListener;
+	private volatile SearchControl currentSearch;
+	private int maxThreads;
+	
+	/** Constructor.
+	 * <br>Unexpected exceptions thrown by background tasks are sent to the current thread's uncaught exception handler.
+	 * @param engine The engine
+	 */
+	public EngineSession(Engine engine) {
+		this(engine, e -> Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e));
+	}
+
+	EngineSession(Engine engine, Consumer<Exception> logger) {
+		this.backTasks = new BackgroundTaskManager(logger);
+		init(engine);
+	}
+	
+	private void init(Engine engine) {
+		this.engine = engine;
+		buildOptions();
+		if (engine instanceof InfoEmitter) {
+			((InfoEmitter)engine).setInfoListener(this::info);
+		}
+		if (engine instanceof GameHistoryAware) {
+			((GameHistoryAware)engine).setGameHistory(history);
+		}
+	}
+	
+	private void buildOptions() {
+		this.options = new LinkedHashMap<>();
+		Arrays.stream(engine.getOptions()).forEach(o -> this.options.put(o.getName(), o));
+		nodesBudget.addOptions(options);
+		capThreads();
+	}
+	
+	private void info(BestMoveReply info) {
+		final Consumer<BestMoveReply> listener = infoListener;
+		if (listener!=null) {
+			listener.accept(info);
+		}
+		final SearchControl search = currentSearch;
+		if (search!=null) {
+			search.pace(info.getNodes());
+		}
+	}
+
+	/** Gets the current engine.
+	 * @return an engine
+	 */
+	public Engine getEngine() {
+		return engine;
+	}
+	
+	/** Changes the engine.
+	 * <br>The current position is set in the new engine, then the previous engine is {@link Engine#release() released}.
+	 * @param engine The new engine
+	 * @throws IllegalStateException if a search is running
+	 */
+	public void setEngine(Engine engine) {
+		if (engine==this.engine) {
+			return;
+		}
+		if (backTasks.isRunning()) {
+			throw new IllegalStateException("Engine is working, it can't be changed");
+		}
+		final String pos = this.engine.getFEN();
+		if (pos!=null) {
+			this.position = new Position(pos, Collections.emptyList());
+			if (engine instanceof GameHistoryAware) {
+				position.setTo((GameHistoryAware)engine, history);
+			} else {
+				engine.setStartPosition(pos);
+			}
+		}
+		final Engine previous = this.engine;
+		unregister(previous);
+		init(engine);
+		register(engine);
+		previous.release();
+	}
+
+	/** Sets the listener of intermediate search results sent by engines that implement {@link InfoEmitter}.
+	 * @param listener The listener (null to remove the listener). It is called in the search thread.
+	 */
+	public void setInfoListener(Consumer<BestMoveReply> listener) {
+		this.infoListener = listener;
+	}
+
+	/** Sets the listener of search results.
+	 * <br>It is called before the futures returned by {@link #go(GoOptions)} are completed.
+	 * @param listener The listener (null to remove the listener). It is called in the search thread.
+	 */
+	public void setBestMoveListener(Consumer<BestMoveReply> listener) {
+		this.bestMoveListener = listener;
+	}
+
+	/** Gets the metrics collected by this session.
+	 * @return a metrics instance
+	 */
+	public UCIMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/** Gets the options of the current engine.
+	 * @return an unmodifiable collection
+	 */
+	public Collection<Option<?>> getOptions() {
+		return Collections.unmodifiableCollection(options.values());
+	}
+	
+	/** Gets an option of the current engine.
+	 * @param name The option's name
+	 * @return The option or null if the option does not exist.
+	 */
+	public Option<?> getOption(String name) {
+		return options.get(name);
+	}
+	
+	/** Sets the value of an option.
+	 * <br>If the option is deferred, its change will be applied on the next call to {@link #newGame()}, {@link #go(GoOptions)} or {@link #applyDeferredOptions()}.
+	 * @param name The option's name
+	 * @param value The option's value (null for a button)
+	 * @throws IllegalArgumentException if the option does not exist or if the value is illegal
+	 */
+	public void setOption(String name, String value) {
+		final Option<?> option = options.get(name);
+		if (option==null) {
+			throw new IllegalArgumentException("Unknown option "+name);
+		}
+		final boolean capped = THREADS.equals(name) && maxThreads>0 && value!=null && value.matches("\\d+") && Long.parseLong(value)>maxThreads;
+		option.setValue(capped ? Integer.toString(maxThreads) : value);
+	}
+	
+	/** Sets the CPU budget of this session, expressed in nodes per second.
+	 * <br>When a budget is set, the searches limited by time are also limited to the number of nodes the budget allows during the time
+	 * allotted to the move, and searches of engines that implement {@link InfoEmitter} are paced: The search thread is paused in the info listener
+	 * when the engine searched more nodes than the budget allows since the search start.
+	 * <br>The session also declares the <i>UCI_LimitStrength</i> (unless the engine already declares it) and <i>NodesPerSecond</i> options.
+	 * When <i>UCI_LimitStrength</i> is true, the budget is the value of <i>NodesPerSecond</i>, which can't exceed the budget set by this method.
+	 * @param nodesPerSecond The maximum number of nodes per second, 0 for no limit.
+	 * @throws IllegalArgumentException if nodesPerSecond is negative
+	 */
+	public void setNodesPerSecond(long nodesPerSecond) {
+		if (nodesBudget.setMax(nodesPerSecond)) {
+			buildOptions();
+		}
+	}
+	
+	/** Gets the nodes per second budget of the next search.
+	 * @return a number of nodes per second, 0 if there's no limit
+	 */
+	long getNodesPerSecond() {
+		return nodesBudget.get(options);
+	}
+	
+	/** Sets the maximum number of threads used by this session.
+	 * <br>The values of the engine's <i>Threads</i> option are capped to this maximum.
+	 * @param maxThreads The maximum number of threads, 0 for no limit.
+	 */
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+		capThreads();
+	}
+
+	/** Gets the maximum number of threads used by this session.
+	 * @return a positive int, or 0 if there's no limit.
+	 */
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+	
+	private void capThreads() {
+		final Option<?> threads = options.get(THREADS);
+		if (maxThreads>0 && threads!=null && threads.getValue() instanceof Integer && (Integer)threads.getValue()>maxThreads) {
+			threads.setValue(Integer.toString(maxThreads));
+		}
+	}
+
+	/** Enables instant replies under low clock.
+	 * <br>After a search, the principal variation is retained. If the next search starts from the position reached after the best move and
+	 * the ponder move, and the remaining time of the side to move is lower than a threshold, the search is answered immediately
+	 * with the next move of the retained principal variation.
+	 * <br>Please note the position is recognized only if the client sends the same start position followed by the played moves
+	 * (as GUIs usually do with <i>position startpos moves ...</i>), and the principal variation should contain at least 3 moves
+	 * (see {@link BestMoveReply#BestMoveReply(List, long, int, Integer)}).
+	 * @param thresholdMs The clock threshold in milliseconds, 0 to disable instant replies.
+	 * @param checkDepth The depth of a search performed to check the retained move, 0 for no check. If the check search finds another move,
+	 * its result is returned instead of the retained move.
+	 */
+	public void setInstantReply(long thresholdMs, int checkDepth) {
+		instantReplies.set(thresholdMs, checkDepth);
+	}
+
+	/** Applies the pending changes of deferred options.
+	 * <br>If a background task is running, changes are applied when it is completed.
+	 * @return A future completed when changes are applied, with true if some changes were applied.
+	 * @see Option#deferred(Option...)
+	 */
+	public CompletableFuture<Boolean> applyDeferredOptions() {
+		return runWhenIdle(() -> Option.applyPending(options.values()));
+	}
+	
+	/** Sets the cache used to store search results.
+	 * @param cache The cache to use, null to disable caching
+	 * @see AnalysisCache
+	 */
+	public void setAnalysisCache(AnalysisCache cache) {
+		unregister(analysisCache);
+		this.analysisCache = cache;
+		register(cache);
+	}
+	
+	/** Sets the governor that shrinks the analysis cache and the engine (if it implements {@link Shrinkable}) when the heap is under pressure.
+	 * @param governor The governor to use, null to stop shrinking
+	 */
+	public void setMemoryGovernor(MemoryGovernor governor) {
+		unregister(engine);
+		unregister(analysisCache);
+		this.memoryGovernor = governor;
+		register(engine);
+		register(analysisCache);
+	}
+	
+	/** Sets the file where the analysis cache and the engine (if it implements {@link Persistable}) are saved.
+	 * <br>They are reloaded from this file when they are registered.
+	 * @param file The file to use, null to stop persistence
+	 */
+	public void setCacheFile(CacheFile file) {
+		unregister(engine);
+		unregister(analysisCache);
+		this.cacheFile = file;
+		register(engine);
+		register(analysisCache);
+	}
+	
+	/** Sets the accounting of the resources used by searches.
+	 * <br>When set, the CPU time and the memory allocated by the thread that runs each search are recorded as <i>go task</i>.
+	 * @param resourceUsage The accounting to use, null to stop accounting
+	 */
+	public void setResourceUsage(ResourceUsage resourceUsage) {
+		resources.setUsage(resourceUsage);
+	}
+	
+	private void register(Object candidate) {
+		if (memoryGovernor!=null && candidate instanceof Shrinkable) {
+			memoryGovernor.register((Shrinkable)candidate);
+		}
+		if (cacheFile!=null && candidate instanceof Persistable) {
+			cacheFile.register((Persistable)candidate);
+		}
+	}
+
+	private void unregister(Object candidate) {
+		if (memoryGovernor!=null && candidate instanceof Shrinkable) {
+			memoryGovernor.unregister((Shrinkable)candidate);
+		}
+		if (cacheFile!=null && candidate instanceof Persistable) {
+			cacheFile.unregister((Persistable)candidate);
+		}
+	}
+
+	/** Clears all data from previous game.
+	 * <br>If a search is running, this is done after the search is completed.
+	 * @return A future completed when the engine is ready for the new game.
+	 */
+	public CompletableFuture<Void> newGame() {
+		applyDeferredOptions();
+		return runWhenIdle(() -> {
+			instantReplies.clear();
+			engine.newGame();
+			return null;
+		});
+	}
+
+	/** Sets the position.
+	 * <br>If a search is running, the position will be set after the search is completed.
+	 * @param fen The start position in FEN format
+	 * @param moves The moves played from the start position
+	 * @return A future completed when the position is set.
+	 */
+	public CompletableFuture<Void> setPosition(String fen, List<UCIMove> moves) {
+		return setPosition(new Position(fen, moves));
+	}
+	
+	CompletableFuture<Void> setPosition(Position position) {
+		return runWhenIdle(() -> {
+			doSetPosition(position);
+			return null;
+		});
+	}
+	
+	private void doSetPosition(Position position) {
+		final long start = System.nanoTime();
+		final PositionEvent event = new PositionEvent();
+		event.begin();
+		if (engine instanceof GameHistoryAware) {
+			position.setTo((GameHistoryAware)engine, history);
+		} else {
+			position.setTo(engine);
+		}
+		this.position = position;
+		if (event.shouldCommit()) {
+			event.fen = position.getFEN();
+			event.moveCount = position.getMoves().size();
+			event.commit();
+		}
+		metrics.positionProcessed(System.nanoTime()-start);
+	}
+	
+	/** Gets the current position.
+	 * @return The last position set in this session, null if there's no position.
+	 */
+	Position getPosition() {
+		return position;
+	}
+	
+	private <T> CompletableFuture<T> runWhenIdle(Supplier<T> action) {
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		backTasks.runWhenIdle(() -> {
+			try {
+				result.complete(action.get());
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/** Starts a search.
+	 * <br>The search starts after the previous searches and position changes are completed.
+	 * @param goOptions The search options
+	 * @return A future completed with the search result. It is completed exceptionally with an {@link IllegalStateException} if
+	 * the engine is already searching or if no position is defined. Cancelling the future stops the search.
+	 */
+	public CompletableFuture<BestMoveReply> go(GoOptions goOptions) {
+		final SearchControl control = new SearchControl();
+		final CompletableFuture<BestMoveReply> result = new CompletableFuture<>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				if (!isDone()) {
+					stop();
+				}
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		if (!backTasks.doBackground(measured("go task", () -> search(goOptions, control, result)), control)) {
+			result.completeExceptionally(new IllegalStateException("Engine is already working"));
+		}
+		return result;
+	}
+	
+	/** Stops the current search (or background task).
+	 * @return true if something was stopped.
+	 */
+	public boolean stop() {
+		final Runnable stopped = backTasks.stopTask();
+		if (stopped instanceof SearchControl) {
+			// Only stop requests are counted, not the stops made when the session is closed or a task fails
+			metrics.stopped();
+		}
+		return stopped!=null;
+	}
+	
+	/** Checks whether a search (or another background task) is running or waiting for execution.
+	 * @return true if a background task is running
+	 */
+	public boolean isRunning() {
+		return backTasks.isRunning();
+	}
+
+	/** Runs a stoppable task in the background.
+	 * @param task The task
+	 * @param stopper The task that stops the task
+	 * @return false if the task was rejected because another task is running.
+	 */
+	boolean doBackground(Runnable task, Runnable stopper) {
+		return backTasks.doBackground(task, stopper);
+	}
+
+	/** Wraps a task in order to record the resources it uses.
+	 * @param name The name under which the resources are recorded
+	 * @param task The task
+	 * @return a task that records the resources used by <i>task</i> if resource accounting is enabled when it runs
+	 * @see #setResourceUsage(ResourceUsage)
+	 */
+	Runnable measured(String name, Runnable task) {
+		return resources.measured(name, task);
+	}
+	
+	/** Runs an action when all previously submitted tasks are completed.
+	 * @param action The action to run
+	 */
+	void runWhenIdle(Runnable action) {
+		backTasks.runWhenIdle(action);
+	}
+
+	/** The state shared by a search and its stopper.
+	 * <br>It is the stopper of the search.
+	 */
+	private static class SearchControl implements Runnable {
+		/** The maximum duration of a pause, in order to remain responsive to stop requests */
+		private static final long MAX_PAUSE_MS = 10;
+		private final long start = System.nanoTime();
+		private final SearchEvent searchEvent = new SearchEvent();
+		private final StopEvent stopEvent = new StopEvent();
+		private final AtomicBoolean stopped = new AtomicBoolean();
+		private final AtomicReference<LongRunningTask<BestMoveReply>> task = new AtomicReference<>();
+		private long nodesPerSecond;
+		
+		private SearchControl() {
+			searchEvent.begin();
+		}
+		
+		@Override
+		public void run() {
+			stop();
+		}
+
+		private void stop() {
+			stopEvent.begin();
+			stopped.set(true);
+			final LongRunningTask<BestMoveReply> current = task.get();
+			if (current!=null) {
+				current.stop();
+			}
+		}
+		
+		private LongRunningTask<BestMoveReply> setTask(LongRunningTask<BestMoveReply> task) {
+			this.task.set(task);
+			if (stopped.get()) {
+				// Stop was requested before the search started
+				task.stop();
+			}
+			return task;
+		}
+		
+		/** Pauses the calling thread until the nodes searched are allowed by the nodes per second budget.
+		 * @param nodes The number of nodes searched since the search start
+		 */
+		private void pace(long nodes) {
+			if (nodesPerSecond<=0) {
+				return;
+			}
+			final long due = start + (long)(nodes*1e9/nodesPerSecond);
+			try {
+				for (long wait = due-System.nanoTime(); wait>0 && !stopped.get(); wait = due-System.nanoTime()) {
+					Thread.sleep(Math.min(MAX_PAUSE_MS, Math.max(1, wait/1_000_000)));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/** Performs a search.
+	 * <br>This method is executed in the background, after the previous background tasks and pending position changes.
+	 */
+	private void search(GoOptions goOptions, SearchControl control, CompletableFuture<BestMoveReply> result) {
+		if (engine.getFEN()==null) {
+			backTasks.release(control);
+			result.completeExceptionally(new IllegalStateException("No position defined"));
+			return;
+		}
+		final BestMoveReply reply;
+		try {
+			reply = search(goOptions, control);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+			throw e;
+		}
+		// The search is completed, a new search can be accepted (it will start after this task)
+		backTasks.release(control);
+		final Consumer<BestMoveReply> listener = bestMoveListener;
+		if (listener!=null) {
+			listener.accept(reply);
+		}
+		result.complete(reply);
+	}
+
+	private BestMoveReply search(GoOptions requested, SearchControl control) {
+		// No search is running, it's time to apply deferred options
+		Option.applyPending(options.values());
+		control.nodesPerSecond = getNodesPerSecond();
+		final long moveTimeMs = getMoveTime(requested);
+		final GoOptions goOptions = NodesBudget.limit(requested, control.nodesPerSecond, moveTimeMs);
+		final long budgetMs = getTimeBudget(goOptions);
+		final String fen = engine.getFEN();
+		final String cacheId = analysisCache==null ? null : getCacheId();
+		final Optional<BestMoveReply> cached = analysisCache==null ? Optional.empty() : analysisCache.get(cacheId, fen, goOptions);
+		// Analysis searches are always performed
+		final BestMoveReply trivial = moveTimeMs>0 ? TrivialReplies.get(engine, goOptions) : null;
+		final BestMoveReply instant = trivial==null ? instantReplies.get(position, goOptions, isWhiteToMove()) : null;
+		final boolean fromCache = trivial!=null || instant!=null || (cached.isPresent() && AnalysisCache.canAnswer(goOptions, cached.get()));
+		final LongRunningTask<BestMoveReply> task;
+		if (trivial!=null) {
+			task = control.setTask(getCachedTask(trivial));
+		} else if (instant!=null) {
+			task = control.setTask(instantReplies.getTask(engine, goOptions, instant));
+		} else {
+			task = control.setTask(fromCache ? getCachedTask(cached.get()) : getSearchTask(goOptions, cached));
+		}
+		currentSearch = control;
+		final BestMoveReply reply;
+		try {
+			reply = task.get();
+		} finally {
+			currentSearch = null;
+		}
+		if (analysisCache!=null && !fromCache) {
+			analysisCache.put(cacheId, fen, goOptions, reply);
+		}
+		instantReplies.retain(position, reply);
+		final long duration = System.nanoTime()-control.start;
+		metrics.searchEnded(duration, fromCache ? 0 : reply.getNodes(), budgetMs>0 && duration/1_000_000>budgetMs);
+		commit(control, fen, goOptions, reply);
+		return reply;
+	}
+
+	/** Gets the id under which the search results are cached.
+	 * <br>As options may change the search results, it contains the engine's id and the values of its options.
+	 * @return a String
+	 */
+	private String getCacheId() {
+		return options.values().stream().map(o -> o.getName()+"="+o.getValue()).collect(Collectors.joining(",", engine.getId()+"[", "]"));
+	}
+
+	static LongRunningTask<BestMoveReply> getCachedTask(BestMoveReply reply) {
+		return new LongRunningTask<>() {
+			@Override
+			public BestMoveReply get() {
+				return reply;
+			}
+		};
+	}
+
+	private LongRunningTask<BestMoveReply> getSearchTask(GoOptions options, Optional<BestMoveReply> previous) {
+		if (previous.isPresent() && engine instanceof PreviousResultAware) {
+			((PreviousResultAware)engine).setPreviousResult(previous.get());
+		}
+		return engine.go(options);
+	}
+
+	/** Estimates the time allotted to a move.
+	 * @param options The go options
+	 * @return a number of milliseconds, 0 if the search is not limited by time
+	 */
+	private long getMoveTime(GoOptions options) {
+		final GoOptions.TimeOptions time = options.getTimeOptions();
+		if (time.isInfinite() || options.isPonder()) {
+			return 0;
+		}
+		if (time.getMoveTimeMs()>0) {
+			return time.getMoveTimeMs();
+		}
+		final GoOptions.PlayerClockData clock = isWhiteToMove() ? time.getWhiteClock() : time.getBlackClock();
+		if (clock.getRemainingMs()<=0) {
+			return 0;
+		}
+		return clock.getRemainingMs()/(time.getMovesToGo()>0 ? time.getMovesToGo() : DEFAULT_MOVES_TO_GO) + clock.getIncrementMs();
+	}
+	
+	private boolean isWhiteToMove() {
+		final String[] fen = engine.getFEN().split(" ");
+		return fen.length<2 || "w".equals(fen[1]);
+	}
+
+	/** Gets the maximum time a search can last without exceeding the time allowed by the go options.
+	 * @param options The go options
+	 * @return a number of milliseconds, 0 if the search is not limited by time
+	 */
+	private long getTimeBudget(GoOptions options) {
+		final GoOptions.TimeOptions time = options.getTimeOptions();
+		if (time.isInfinite() || options.isPonder()) {
+			return 0;
+		}
+		if (time.getMoveTimeMs()>0) {
+			return time.getMoveTimeMs();
+		}
+		return (isWhiteToMove() ? time.getWhiteClock() : time.getBlackClock()).getRemainingMs();
+	}
+
+	private void commit(SearchControl control, String fen, GoOptions goOptions, BestMoveReply reply) {
+		final boolean stopped = control.stopped.get();
+		final StopEvent stopEvent = control.stopEvent;
+		final SearchEvent searchEvent = control.searchEvent;
+		if (stopped && stopEvent.shouldCommit()) {
+			stopEvent.engine = engine.getId();
+			stopEvent.commit();
+		}
+		if (searchEvent.shouldCommit()) {
+			searchEvent.engine = engine.getId();
+			searchEvent.fen = fen;
+			searchEvent.options = goOptions.toString();
+			searchEvent.bestMove = reply.getMove().toString();
+			searchEvent.ponderMove = reply.getPonderMove().map(UCIMove::toString).orElse(null);
+			searchEvent.stopped = stopped;
+			searchEvent.commit();
+		}
+	}
+
+	@Override
+	public void close() {
+		backTasks.close();
+		setMemoryGovernor(null);
+		resources.close();
+	}
+}
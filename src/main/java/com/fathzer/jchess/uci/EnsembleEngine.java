@@ -0,0 +1,310 @@
+package com.fathzer.jchess.uci;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.fathzer.jchess.uci.option.Option;
+
+/** An engine that runs many instances of an engine on the same position, in order to use many cores with single threaded engines.
+ * <br>The instances are built by an {@link EngineFactory}. They search in parallel, are stopped together, and their results are merged.
+ * <br>The options of this engine are the options of the first instance. Their values are copied to the other instances before each search
+ * (please note that buttons are not propagated).
+ * <br>The searches of the instances, except the first one, run on a pool of daemon threads that lives until {@link #release()} is called
+ * (it is rebuilt if the engine is used again).
+ */
+public class EnsembleEngine implements Engine, InfoEmitter {
+	/** The way the search is shared between instances.
+	 */
+	public enum Strategy {
+		/** All instances search all the moves with the requested limits.
+		 * <br>Instances that implement {@link Seedable} receive different seeds, so that they explore the tree in different orders.
+		 * <br>The deepest result is selected (the best score if depths are equal).
+		 * <br>Please note that instances do not share any table. So, a search limited by depth is not faster than with a single instance,
+		 * it may only return a better move.
+		 */
+		SEEDED,
+		/** The root moves are partitioned between instances (using the <i>searchmoves</i> option).
+		 * <br>The result with the best score is selected (the deepest one if scores are equal).
+		 * <br>The root moves are the <i>searchmoves</i> of the go command or, if there's none, the legal moves of the position if the engine implements
+		 * both {@link MoveGeneratorSupplier} and {@link MoveToUCIConverter}. If the root moves are unknown, {@link #SEEDED} is used.
+		 */
+		SEARCH_MOVES
+	}
+
+	private static final Comparator<BestMoveReply> BY_DEPTH = Comparator.comparingInt(BestMoveReply::getDepth).thenComparingInt(EnsembleEngine::getScore);
+	private static final Comparator<BestMoveReply> BY_SCORE = Comparator.comparingInt(EnsembleEngine::getScore).thenComparingInt(BestMoveReply::getDepth);
+
+	private final String id;
+	private final Strategy strategy;
+	private final List<Engine> instances;
+	private final List<Map<String, Option<?>>> instanceOptions;
+	private final Option<?>[] options;
+	private volatile Consumer<BestMoveReply> infoListener;
+	private ExecutorService executor;
+
+	/** Constructor.
+	 * @param factory The factory that builds the instances.
+	 * @param size The number of instances
+	 * @param strategy The way the search is shared between instances
+	 * @throws IllegalArgumentException if size is less than 1
+	 */
+	public EnsembleEngine(EngineFactory factory, int size, Strategy strategy) {
+		if (size<1) {
+			throw new IllegalArgumentException("Size should be strictly positive");
+		}
+		// The id can't contain spaces, the engine command would not be able to select this engine
+		this.id = factory.getId()+"-ensemble";
+		this.strategy = strategy;
+		this.instances = new ArrayList<>(size);
+		this.instanceOptions = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final Engine instance = factory.get();
+			instances.add(instance);
+			final Map<String, Option<?>> map = new LinkedHashMap<>();
+			Arrays.stream(instance.getOptions()).forEach(o -> map.put(o.getName(), o));
+			instanceOptions.add(map);
+			if (instance instanceof Seedable) {
+				((Seedable)instance).setSeed(i);
+			}
+			if (instance instanceof InfoEmitter) {
+				((InfoEmitter)instance).setInfoListener(this::info);
+			}
+		}
+		this.options = instanceOptions.get(0).values().toArray(new Option[0]);
+	}
+
+	private void info(BestMoveReply info) {
+		final Consumer<BestMoveReply> listener = infoListener;
+		if (listener!=null) {
+			listener.accept(info);
+		}
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public String getAuthor() {
+		return instances.get(0).getAuthor();
+	}
+
+	@Override
+	public void setInfoListener(Consumer<BestMoveReply> listener) {
+		this.infoListener = listener;
+	}
+
+	@Override
+	public Option<?>[] getOptions() {
+		return options;
+	}
+
+	@Override
+	public boolean isChess960Supported() {
+		return instances.get(0).isChess960Supported();
+	}
+
+	@Override
+	public void setChess960(boolean chess960Mode) {
+		instances.forEach(e -> e.setChess960(chess960Mode));
+	}
+
+	@Override
+	public void newGame() {
+		instances.forEach(Engine::newGame);
+	}
+
+	@Override
+	public void release() {
+		instances.forEach(Engine::release);
+		synchronized (this) {
+			if (executor!=null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+	
+	private synchronized ExecutorService getExecutor() {
+		if (executor==null) {
+			final ThreadFactory factory = ThreadFactories.get("uci-ensemble");
+			executor = Executors.newFixedThreadPool(instances.size()-1, r -> {
+				// The pool lives as long as the engine, it should not prevent the JVM from exiting
+				final Thread thread = factory.newThread(r);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	@Override
+	public void setStartPosition(String fen) {
+		instances.forEach(e -> e.setStartPosition(fen));
+	}
+
+	@Override
+	public void move(UCIMove move) {
+		instances.forEach(e -> e.move(move));
+	}
+
+	@Override
+	public String getBoardAsString() {
+		return instances.get(0).getBoardAsString();
+	}
+
+	@Override
+	public String getFEN() {
+		return instances.get(0).getFEN();
+	}
+
+	/** Copies the option values of the first instance to the other ones.
+	 */
+	private void syncOptions() {
+		for (Map<String, Option<?>> others : instanceOptions.subList(1, instanceOptions.size())) {
+			for (Option<?> option : options) {
+				final Option<?> other = others.get(option.getName());
+				if (other!=null && option.getValue()!=null && !Objects.equals(option.getValue(), other.getValue())) {
+					other.setValue(option.getValue().toString());
+				}
+			}
+			Option.applyPending(others.values());
+		}
+	}
+
+	@Override
+	public LongRunningTask<BestMoveReply> go(GoOptions params) {
+		syncOptions();
+		List<GoOptions> plan = strategy==Strategy.SEARCH_MOVES ? getSearchMovesPlan(params) : Collections.emptyList();
+		final Comparator<BestMoveReply> comparator = plan.isEmpty() ? BY_DEPTH : BY_SCORE;
+		if (plan.isEmpty()) {
+			plan = getSeededPlan(params);
+		}
+		final List<LongRunningTask<BestMoveReply>> tasks = new ArrayList<>(plan.size());
+		for (int i = 0; i < plan.size(); i++) {
+			tasks.add(instances.get(i).go(plan.get(i)));
+		}
+		return new LongRunningTask<>() {
+			@Override
+			public BestMoveReply get() {
+				return merge(run(tasks), comparator);
+			}
+
+			@Override
+			public void stop() {
+				super.stop();
+				tasks.forEach(LongRunningTask::stop);
+			}
+		};
+	}
+
+	private List<GoOptions> getSeededPlan(GoOptions params) {
+		final List<GoOptions> result = new ArrayList<>(instances.size());
+		for (int i = 0; i < instances.size(); i++) {
+			result.add(new GoOptions(params));
+		}
+		return result;
+	}
+
+	private List<GoOptions> getSearchMovesPlan(GoOptions params) {
+		final List<String> moves = params.getMoveToSearch().isEmpty() ?
+				RootMoves.of(instances.get(0)).orElse(Collections.emptyList()) :
+				params.getMoveToSearch().stream().map(UCIMove::toString).collect(Collectors.toList());
+		if (moves.size()<2) {
+			return Collections.emptyList();
+		}
+		final List<GoOptions> result = new ArrayList<>();
+		for (int i = 0; i < Math.min(instances.size(), moves.size()); i++) {
+			final GoOptions options = new GoOptions(params);
+			options.getMoveToSearch().clear();
+			result.add(options);
+		}
+		// Moves are dealt round-robin, so that each instance gets moves from the whole move ordering
+		for (int i = 0; i < moves.size(); i++) {
+			result.get(i%result.size()).getMoveToSearch().add(UCIMove.from(moves.get(i)));
+		}
+		return result;
+	}
+
+	private List<BestMoveReply> run(List<LongRunningTask<BestMoveReply>> tasks) {
+		final List<BestMoveReply> replies = new ArrayList<>(tasks.size());
+		if (tasks.size()==1) {
+			replies.add(tasks.get(0).get());
+			return replies;
+		}
+		final ExecutorService pool = getExecutor();
+		final List<Future<BestMoveReply>> futures = new ArrayList<>(tasks.size()-1);
+		try {
+			for (LongRunningTask<BestMoveReply> task : tasks.subList(1, tasks.size())) {
+				futures.add(pool.submit(() -> {
+					try {
+						return task.get();
+					} catch (RuntimeException e) {
+						// Stop the other instances, including the one that runs in the current thread
+						tasks.forEach(LongRunningTask::stop);
+						throw e;
+					}
+				}));
+			}
+			// The first instance runs in the current thread
+			replies.add(tasks.get(0).get());
+			for (Future<BestMoveReply> future : futures) {
+				replies.add(future.get());
+			}
+			return replies;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			tasks.forEach(LongRunningTask::stop);
+			futures.forEach(f -> f.cancel(true));
+			return replies;
+		} catch (ExecutionException e) {
+			stopAndJoin(tasks, futures);
+			throw new IllegalStateException(e.getCause());
+		} catch (RuntimeException e) {
+			stopAndJoin(tasks, futures);
+			throw e;
+		}
+	}
+	
+	/** Stops all the instances after one of them failed, and waits for the end of the ones running in the pool.
+	 * <br>This way, no search of this engine is still running when the failure is reported.
+	 */
+	private static void stopAndJoin(List<LongRunningTask<BestMoveReply>> tasks, List<Future<BestMoveReply>> futures) {
+		tasks.forEach(LongRunningTask::stop);
+		for (Future<BestMoveReply> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// Only the first failure is reported
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				futures.forEach(f -> f.cancel(true));
+				return;
+			}
+		}
+	}
+
+	private static BestMoveReply merge(List<BestMoveReply> replies, Comparator<BestMoveReply> comparator) {
+		final BestMoveReply best = replies.stream().max(comparator).orElseThrow();
+		final long nodes = replies.stream().mapToLong(BestMoveReply::getNodes).sum();
+		return new BestMoveReply(best.getPrincipalVariation(), nodes, best.getDepth(), best.getScore().isPresent() ? best.getScore().getAsInt() : null);
+	}
+
+	private static int getScore(BestMoveReply reply) {
+		return reply.getScore().orElse(Integer.MIN_VALUE);
+	}
+}
@@ -0,0 +1,70 @@
+package com.fathzer.jchess.uci;
+
+/** The hash keys of the positions of the current game.
+ * <br>The keys are stored in a ring of primitive longs: when the ring is full, the oldest positions are forgotten.
+ * This class is read only for engines, it never allocates memory after its creation.
+ * @see GameHistoryAware
+ */
+public class GameHistory {
+	private final long[] hashes;
+	private final int mask;
+	private int count;
+
+	/** Constructor.
+	 * @param capacity The maximum number of positions kept (it is rounded up to a power of 2).
+	 * @throws IllegalArgumentException if capacity is not strictly positive
+	 */
+	GameHistory(int capacity) {
+		if (capacity<=0) {
+			throw new IllegalArgumentException("Capacity should be strictly positive");
+		}
+		final int size = Integer.highestOneBit(capacity)==capacity ? capacity : Integer.highestOneBit(capacity)<<1;
+		this.hashes = new long[size];
+		this.mask = size-1;
+	}
+	
+	void clear() {
+		count = 0;
+	}
+	
+	void add(long hash) {
+		hashes[count & mask] = hash;
+		count++;
+	}
+	
+	/** Gets the number of positions in this history.
+	 * @return an int, the current position included
+	 */
+	public int size() {
+		return Math.min(count, hashes.length);
+	}
+	
+	/** Gets the hash of a position.
+	 * @param pliesAgo The number of plies played since the position (0 for the current position).
+	 * @return The hash key
+	 * @throws IndexOutOfBoundsException if pliesAgo is negative or greater than or equal to {@link #size()}
+	 */
+	public long get(int pliesAgo) {
+		if (pliesAgo<0 || pliesAgo>=size()) {
+			throw new IndexOutOfBoundsException(pliesAgo);
+		}
+		return hashes[(count-1-pliesAgo) & mask];
+	}
+	
+	/** Counts the occurrences of a position in the most recent positions.
+	 * @param hash The hash of the position
+	 * @param maxPliesAgo The number of plies to scan (for instance the half move clock of the current position, as no position can be repeated
+	 * before the last capture or pawn move). Positions from 0 to maxPliesAgo plies ago are scanned.
+	 * @return The number of occurrences
+	 */
+	public int count(long hash, int maxPliesAgo) {
+		final int last = Math.min(maxPliesAgo, size()-1);
+		int result = 0;
+		for (int i = 0; i <= last; i++) {
+			if (hashes[(count-1-i) & mask]==hash) {
+				result++;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,20 @@
+package com.fathzer.jchess.uci;
+
+/** An interface of engines that use the game history maintained by the UCI layer (typically to detect repetitions).
+ * <br>When the position is set, the UCI layer records the hash of the start position and of the position reached after each move
+ * in a {@link GameHistory}, using {@link #getPositionHash()}. The engine receives this history once, and can read it during its searches.
+ */
+public interface GameHistoryAware {
+	/** Gets the hash key of the current position.
+	 * <br>Two positions with the same hash are supposed to be identical (side to move, castling rights and en passant square included).
+	 * @return a hash key (for instance a <a href="https://www.chessprogramming.org/Zobrist_Hashing">Zobrist key</a>).
+	 */
+	long getPositionHash();
+	
+	/** Sets the history of the game.
+	 * <br>This method is called once, when the engine is attached to a session. The history is updated each time the position is set,
+	 * never during a search.
+	 * @param history The game history
+	 */
+	void setGameHistory(GameHistory history);
+}
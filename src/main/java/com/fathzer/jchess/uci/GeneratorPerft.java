@@ -0,0 +1,93 @@
+package com.fathzer.jchess.uci;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fathzer.games.MoveGenerator;
+import com.fathzer.jchess.uci.SplitPerftTask.Divides;
+import com.fathzer.jchess.uci.SplitPerftTask.SubtreePerft;
+
+/** A subtree perft that plays the moves on a move generator, in the calling thread.
+ * <br>Moves refused by {@link MoveGenerator#makeMove(Object)} are not legal, they are counted as found, but not as made, and are not reported in the divides.
+ * @param <M> The class of the moves
+ */
+class GeneratorPerft<M> implements SubtreePerft<M> {
+	private final MoveGenerator<M> generator;
+	private volatile boolean interrupted;
+	private long nbMovesFound;
+	private long nbMovesMade;
+
+	/** Constructor.
+	 * @param generator The move generator, set to the root position. It should only be used by this instance.
+	 */
+	GeneratorPerft(MoveGenerator<M> generator) {
+		this.generator = generator;
+	}
+
+	@Override
+	public Divides<M> divide(List<M> path, int depth) {
+		nbMovesFound = 0;
+		nbMovesMade = 0;
+		int played = 0;
+		try {
+			for (M move : path) {
+				if (!generator.makeMove(move)) {
+					throw new IllegalStateException("Move "+move+" was refused by the move generator");
+				}
+				played++;
+			}
+			final Map<M, Long> counts = new LinkedHashMap<>();
+			final List<M> moves = generator.getMoves();
+			nbMovesFound += moves.size();
+			for (M move : moves) {
+				if (interrupted) {
+					break;
+				}
+				if (generator.makeMove(move)) {
+					nbMovesMade++;
+					try {
+						counts.put(move, depth==1 ? 1 : count(depth-1));
+					} finally {
+						generator.unmakeMove();
+					}
+				}
+			}
+			return new Divides<>(counts, nbMovesFound, nbMovesMade, interrupted);
+		} finally {
+			for (; played>0; played--) {
+				generator.unmakeMove();
+			}
+		}
+	}
+
+	private long count(int depth) {
+		final List<M> moves = generator.getMoves();
+		nbMovesFound += moves.size();
+		long count = 0;
+		for (M move : moves) {
+			if (interrupted) {
+				break;
+			}
+			if (generator.makeMove(move)) {
+				nbMovesMade++;
+				try {
+					count += depth==1 ? 1 : count(depth-1);
+				} finally {
+					generator.unmakeMove();
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void interrupt() {
+		interrupted = true;
+	}
+
+	@Override
+	public void close() {
+		// Nothing to close, the perft runs in the calling thread
+	}
+}
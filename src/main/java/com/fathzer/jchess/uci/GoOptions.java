@@ -102,9 +102,17 @@ public class GoOptions {
 			return remainingMs;
 		}
 
+		public void setRemainingMs(int remainingMs) {
+			this.remainingMs = positive(remainingMs);
+		}
+
 		public int getIncrementMs() {
 			return incrementMs;
 		}
+
+		public void setIncrementMs(int incrementMs) {
+			this.incrementMs = positive(incrementMs);
+		}
 	}
 	
 	public static class TimeOptions {
@@ -118,10 +126,18 @@ public class GoOptions {
 			return movesToGo;
 		}
 
+		public void setMovesToGo(int movesToGo) {
+			this.movesToGo = positive(movesToGo);
+		}
+
 		public int getMoveTimeMs() {
 			return moveTimeMs;
 		}
 
+		public void setMoveTimeMs(int moveTimeMs) {
+			this.moveTimeMs = positive(moveTimeMs);
+		}
+
 		public PlayerClockData getWhiteClock() {
 			return whiteClock;
 		}
@@ -133,6 +149,10 @@ public class GoOptions {
 		public boolean isInfinite() {
 			return infinite;
 		}
+
+		public void setInfinite(boolean infinite) {
+			this.infinite = infinite;
+		}
 	}
 
 	private List<String> ignoredOptions = new LinkedList<>();
@@ -143,6 +163,13 @@ public class GoOptions {
 	private int mate = 0;
 	private List<UCIMove> moveToSearch = new LinkedList<>();
 
+	/** Constructor.
+	 * <br>Builds options with no limit. Use the setters to define the search limits.
+	 */
+	public GoOptions() {
+		super();
+	}
+
 	/** Constructor.
 	 * @param tokenList the go command options as tokens (for example: wtime, 297999, btime, 300000, winc, 3000, binc, 3000)
 	 * @throws IllegalArgumentException if a token is illegal (for instance, we expected a number, but we got a string).
@@ -161,6 +188,28 @@ public class GoOptions {
 		}
 	}
 
+	/** Copy constructor.
+	 * @param other The options to copy
+	 */
+	public GoOptions(GoOptions other) {
+		ignoredOptions.addAll(other.ignoredOptions);
+		copy(other.time.whiteClock, time.whiteClock);
+		copy(other.time.blackClock, time.blackClock);
+		time.movesToGo = other.time.movesToGo;
+		time.moveTimeMs = other.time.moveTimeMs;
+		time.infinite = other.time.infinite;
+		ponder = other.ponder;
+		depth = other.depth;
+		nodes = other.nodes;
+		mate = other.mate;
+		moveToSearch.addAll(other.moveToSearch);
+	}
+	
+	private static void copy(PlayerClockData from, PlayerClockData to) {
+		to.remainingMs = from.remainingMs;
+		to.incrementMs = from.incrementMs;
+	}
+
 	public List<String> getIgnoredOptions() {
 		return ignoredOptions;
 	}
@@ -176,6 +225,14 @@ public class GoOptions {
 		return depth;
 	}
 
+	/** Sets the <i>depth</i> option.
+	 * @param depth The depth, 0 to unset the option
+	 * @throws IllegalArgumentException if depth is negative
+	 */
+	public void setDepth(int depth) {
+		this.depth = positive(depth);
+	}
+
 	/** Gets the <i>nodes</i> option.
 	 * @return 0 if the option is not set
 	 */
@@ -183,6 +240,14 @@ public class GoOptions {
 		return nodes;
 	}
 
+	/** Sets the <i>nodes</i> option.
+	 * @param nodes The number of nodes, 0 to unset the option
+	 * @throws IllegalArgumentException if nodes is negative
+	 */
+	public void setNodes(int nodes) {
+		this.nodes = positive(nodes);
+	}
+
 	/** Gets the <i>mate</i> option.
 	 * @return 0 if the option is not set
 	 */
@@ -190,11 +255,76 @@ public class GoOptions {
 		return mate;
 	}
 
+	/** Sets the <i>mate</i> option.
+	 * @param mate The number of moves, 0 to unset the option
+	 * @throws IllegalArgumentException if mate is negative
+	 */
+	public void setMate(int mate) {
+		this.mate = positive(mate);
+	}
+
 	public boolean isPonder() {
 		return ponder;
 	}
 
+	public void setPonder(boolean ponder) {
+		this.ponder = ponder;
+	}
+
+	/** Gets the moves to search.
+	 * @return a modifiable list of moves, empty if all moves should be searched
+	 */
 	public List<UCIMove> getMoveToSearch() {
 		return moveToSearch;
 	}
+	
+	private static int positive(int value) {
+		if (value<0) {
+			throw new IllegalArgumentException("Unexpected negative number "+value);
+		}
+		return value;
+	}
+
+	/** Gets these options as the arguments of a UCI go command.
+	 * <br>Ignored options are not included.
+	 * @return a String (for example <i>wtime 297999 btime 300000 depth 10</i>)
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder b = new StringBuilder();
+		append(b, Option.WHITE_TIME, time.whiteClock.remainingMs);
+		append(b, Option.WHITE_TIME_INC, time.whiteClock.incrementMs);
+		append(b, Option.BLACK_TIME, time.blackClock.remainingMs);
+		append(b, Option.BLACK_TIME_INC, time.blackClock.incrementMs);
+		append(b, Option.MOVES_TO_GO, time.movesToGo);
+		append(b, Option.MOVE_TIME, time.moveTimeMs);
+		append(b, Option.DEPTH, depth);
+		append(b, Option.NODES, nodes);
+		append(b, Option.MATE, mate);
+		if (time.infinite) {
+			append(b, Option.INFINITE);
+		}
+		if (ponder) {
+			append(b, Option.PONDER);
+		}
+		if (!moveToSearch.isEmpty()) {
+			append(b, Option.SEARCH_MOVES);
+			moveToSearch.forEach(m -> b.append(' ').append(m));
+		}
+		return b.toString();
+	}
+	
+	private static void append(StringBuilder b, Option option, int value) {
+		if (value!=0) {
+			append(b, option);
+			b.append(' ').append(value);
+		}
+	}
+
+	private static void append(StringBuilder b, Option option) {
+		if (b.length()>0) {
+			b.append(' ');
+		}
+		b.append(option.name);
+	}
 }
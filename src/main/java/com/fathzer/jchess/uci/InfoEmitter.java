@@ -0,0 +1,15 @@
+package com.fathzer.jchess.uci;
+
+import java.util.function.Consumer;
+
+/** An interface of engines able to report search progress.
+ * <br>While searching, such an engine sends intermediate results (the best move found so far, the depth, score, nodes, etc...) to a listener.
+ * The UCI layer sends them to the client as <i>info</i> lines.
+ */
+public interface InfoEmitter {
+	/** Sets the listener of intermediate search results.
+	 * <br>This method is called once, before any search.
+	 * @param listener The listener. It can be called from any thread.
+	 */
+	void setInfoListener(Consumer<BestMoveReply> listener);
+}
@@ -0,0 +1,116 @@
+package com.fathzer.jchess.uci;
+
+import java.util.List;
+
+/** The instant replies under low clock.
+ * <br>After a search, the principal variation is retained. If the next search starts from the position reached after the best move and
+ * the ponder move, and the remaining time of the side to move is lower than a threshold, the search is answered with the next move of
+ * the retained principal variation.
+ * @see EngineSession#setInstantReply(long, int)
+ */
+final class InstantReplies {
+	private long thresholdMs;
+	private int checkDepth;
+	private volatile ExpectedPosition expected;
+
+	/** The position expected after the best move and the ponder move of a search, and the reply retained for this position.
+	 */
+	private static class ExpectedPosition {
+		private final String position;
+		private final BestMoveReply reply;
+
+		private ExpectedPosition(String position, BestMoveReply reply) {
+			this.position = position;
+			this.reply = reply;
+		}
+
+		private static ExpectedPosition of(Position searched, BestMoveReply reply) {
+			final List<UCIMove> pv = reply.getPrincipalVariation();
+			if (searched==null || pv.size()<3) {
+				return null;
+			}
+			final Position next = searched.play(pv.get(0)).play(pv.get(1));
+			final Integer score = reply.getScore().isPresent() ? reply.getScore().getAsInt() : null;
+			return new ExpectedPosition(next.toString(), new BestMoveReply(pv.subList(2, pv.size()), 0, Math.max(0, reply.getDepth()-2), score));
+		}
+	}
+
+	/** Sets the parameters of instant replies.
+	 * @param thresholdMs The clock threshold in milliseconds, 0 to disable instant replies.
+	 * @param checkDepth The depth of a search performed to check the retained move, 0 for no check.
+	 */
+	void set(long thresholdMs, int checkDepth) {
+		this.thresholdMs = thresholdMs;
+		this.checkDepth = checkDepth;
+		if (thresholdMs<=0) {
+			expected = null;
+		}
+	}
+
+	/** Forgets the retained reply. */
+	void clear() {
+		expected = null;
+	}
+
+	/** Retains the principal variation of a search.
+	 * @param searched The searched position
+	 * @param reply The search's reply
+	 */
+	void retain(Position searched, BestMoveReply reply) {
+		if (thresholdMs>0) {
+			expected = ExpectedPosition.of(searched, reply);
+		}
+	}
+
+	/** Gets the retained reply that can answer a search immediately.
+	 * @param current The searched position
+	 * @param options The go options
+	 * @param whiteToMove true if white is to move in the searched position
+	 * @return The retained reply, null if the search should be performed
+	 */
+	BestMoveReply get(Position current, GoOptions options, boolean whiteToMove) {
+		final ExpectedPosition exp = expected;
+		if (exp==null || current==null || options.isPonder() || options.getTimeOptions().isInfinite() || !exp.position.equals(current.toString())) {
+			return null;
+		}
+		final GoOptions.TimeOptions time = options.getTimeOptions();
+		final int remaining = (whiteToMove ? time.getWhiteClock() : time.getBlackClock()).getRemainingMs();
+		if (remaining<=0 || remaining>thresholdMs) {
+			return null;
+		}
+		final String move = exp.reply.getMove().toString();
+		if (!options.getMoveToSearch().isEmpty() && options.getMoveToSearch().stream().noneMatch(m -> m.toString().equals(move))) {
+			return null;
+		}
+		return exp.reply;
+	}
+
+	/** Gets the task that answers a search with a retained reply.
+	 * @param engine The engine, set to the searched position
+	 * @param options The go options
+	 * @param retained The retained reply
+	 * @return A task that returns the retained reply, or the result of the check search if it finds another move
+	 */
+	LongRunningTask<BestMoveReply> getTask(Engine engine, GoOptions options, BestMoveReply retained) {
+		if (checkDepth<=0) {
+			return EngineSession.getCachedTask(retained);
+		}
+		final GoOptions check = new GoOptions();
+		check.setDepth(checkDepth);
+		check.getMoveToSearch().addAll(options.getMoveToSearch());
+		final LongRunningTask<BestMoveReply> shallow = engine.go(check);
+		return new LongRunningTask<>() {
+			@Override
+			public BestMoveReply get() {
+				final BestMoveReply reply = shallow.get();
+				return reply.getMove().toString().equals(retained.getMove().toString()) ? retained : reply;
+			}
+
+			@Override
+			public void stop() {
+				super.stop();
+				shallow.stop();
+			}
+		};
+	}
+}
@@ -0,0 +1,85 @@
+package com.fathzer.jchess.uci;
+
+import java.util.Map;
+
+import com.fathzer.jchess.uci.option.CheckOption;
+import com.fathzer.jchess.uci.option.Option;
+import com.fathzer.jchess.uci.option.SpinOption;
+
+/** The CPU budget of an {@link EngineSession}, expressed in nodes per second.
+ * <br>When a budget is set, it declares the <i>UCI_LimitStrength</i> and <i>NodesPerSecond</i> options.
+ * When <i>UCI_LimitStrength</i> is true, the budget is the value of <i>NodesPerSecond</i>, which can't exceed the maximum budget.
+ */
+final class NodesBudget {
+	private static final String LIMIT_STRENGTH = "UCI_LimitStrength";
+	private static final String NODES_PER_SECOND = "NodesPerSecond";
+
+	private long max;
+	private Option<Boolean> limitStrengthOption;
+	private Option<Integer> nodesPerSecondOption;
+
+	/** Sets the maximum budget.
+	 * @param nodesPerSecond The maximum number of nodes per second, 0 for no limit.
+	 * @return true if the budget options changed
+	 * @throws IllegalArgumentException if nodesPerSecond is negative
+	 */
+	boolean setMax(long nodesPerSecond) {
+		if (nodesPerSecond<0) {
+			throw new IllegalArgumentException();
+		}
+		if (nodesPerSecond==max) {
+			return false;
+		}
+		this.max = nodesPerSecond;
+		if (nodesPerSecond==0) {
+			limitStrengthOption = null;
+			nodesPerSecondOption = null;
+		} else {
+			final int maxValue = (int) Math.min(Integer.MAX_VALUE, nodesPerSecond);
+			limitStrengthOption = new CheckOption(LIMIT_STRENGTH, b -> {}, false);
+			nodesPerSecondOption = new SpinOption(NODES_PER_SECOND, n -> {}, maxValue, 1, maxValue);
+		}
+		return true;
+	}
+
+	/** Adds the options of this budget to the options of an engine.
+	 * <br>The options the engine already declares are kept.
+	 * @param options The engine's options, by name
+	 */
+	void addOptions(Map<String, Option<?>> options) {
+		if (limitStrengthOption!=null) {
+			options.putIfAbsent(LIMIT_STRENGTH, limitStrengthOption);
+			options.putIfAbsent(NODES_PER_SECOND, nodesPerSecondOption);
+		}
+	}
+
+	/** Gets the budget of the next search.
+	 * @param options The options of the session
+	 * @return a number of nodes per second, 0 if there's no limit
+	 */
+	long get(Map<String, Option<?>> options) {
+		if (max>0 && options.get(NODES_PER_SECOND)==nodesPerSecondOption && Boolean.TRUE.equals(options.get(LIMIT_STRENGTH).getValue())) {
+			return nodesPerSecondOption.getValue();
+		}
+		return max;
+	}
+
+	/** Limits the number of nodes of a search limited by time to the number of nodes allowed by a budget.
+	 * @param options The go options
+	 * @param nodesPerSecond The budget (0 if there's no limit)
+	 * @param moveTimeMs The time allotted to the move (0 if the search is not limited by time)
+	 * @return The options to use
+	 */
+	static GoOptions limit(GoOptions options, long nodesPerSecond, long moveTimeMs) {
+		if (nodesPerSecond<=0 || moveTimeMs<=0) {
+			return options;
+		}
+		final long nodes = Math.min(Integer.MAX_VALUE, Math.max(1, nodesPerSecond*moveTimeMs/1000));
+		if (options.getNodes()>0 && options.getNodes()<=nodes) {
+			return options;
+		}
+		final GoOptions result = new GoOptions(options);
+		result.setNodes((int)nodes);
+		return result;
+	}
+}
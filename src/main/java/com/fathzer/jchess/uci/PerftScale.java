@@ -0,0 +1,120 @@
+package com.fathzer.jchess.uci;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/** A thread-scaling sweep of perft.
+ * <br>It runs the same divide with 1, 2, 4, ... threads, up to a maximum number of threads, and reports, for each thread count,
+ * the leaves/s and the speedup and parallel efficiency compared with 1 thread.
+ * <br>The perft is a {@link SplitPerftTask}. In order to show what splitting below the root brings, the sweep also reports the imbalance
+ * between the most and the least loaded threads if the work was only split by root moves. It is estimated from the root moves leaf counts,
+ * assigning the largest remaining root move to the least loaded thread. The largest root move also gives the maximum speedup root splitting can achieve.
+ * @param <M> The class of the moves
+ */
+class PerftScale<M> extends LongRunningTask<Integer> {
+	private final MoveGeneratorSupplier<M> engine;
+	private final int depth;
+	private final int maxThreads;
+	private final Consumer<String> out;
+	private volatile SplitPerftTask<M> current;
+	
+	PerftScale(MoveGeneratorSupplier<M> engine, int depth, int maxThreads, Consumer<String> out) {
+		this.engine = engine;
+		this.depth = depth;
+		this.maxThreads = maxThreads;
+		this.out = out;
+	}
+
+	/** Runs the sweep.
+	 * @return The number of thread counts tested.
+	 */
+	@Override
+	public Integer get() {
+		long referenceNanos = 0;
+		int count = 0;
+		for (int threads : getThreadCounts(maxThreads)) {
+			current = SplitPerftTask.of(engine, Object::toString, depth, threads);
+			if (isStopped()) {
+				break;
+			}
+			final long start = System.nanoTime();
+			final PerftSummary result = current.get();
+			final long duration = Math.max(1, System.nanoTime()-start);
+			if (result.isInterrupted() || isStopped()) {
+				out.accept("perft scale has been interrupted");
+				break;
+			}
+			final long[] leaves = result.getDivides().values().stream().mapToLong(Long::longValue).toArray();
+			if (count==0) {
+				referenceNanos = duration;
+				out.accept(getRootStats(leaves));
+			}
+			final double speedup = (double)referenceNanos/duration;
+			out.accept(String.format(Locale.US, "perft scale threads %d: %s leaves/s, speedup %.2f, efficiency %.0f%%, root split imbalance %.2f",
+					threads, NumberFormat.getInstance().format(result.getNbLeaves()*1_000_000_000L/duration), speedup, 100*speedup/threads, getImbalance(leaves, threads)));
+			count++;
+		}
+		return count;
+	}
+	
+	private String getRootStats(long[] leaves) {
+		final long sum = Arrays.stream(leaves).sum();
+		final long max = Arrays.stream(leaves).max().orElse(0);
+		final long min = Arrays.stream(leaves).min().orElse(0);
+		return String.format(Locale.US, "perft scale %d root moves, largest %s leaves, smallest %s leaves, max speedup %.2f",
+				leaves.length, NumberFormat.getInstance().format(max), NumberFormat.getInstance().format(min), max==0 ? 1.0 : (double)sum/max);
+	}
+	
+	/** Gets the thread counts to test.
+	 * @param maxThreads The maximum number of threads
+	 * @return The powers of 2 lower than maxThreads, followed by maxThreads
+	 */
+	static List<Integer> getThreadCounts(int maxThreads) {
+		final List<Integer> result = new ArrayList<>();
+		for (int i = 1; i < maxThreads; i = i*2) {
+			result.add(i);
+		}
+		result.add(maxThreads);
+		return result;
+	}
+	
+	/** Estimates the imbalance between threads when root moves are shared between them.
+	 * <br>Root moves are assigned, largest first, to the least loaded thread.
+	 * @param leaves The leaf counts of root moves
+	 * @param threads The number of threads
+	 * @return The ratio between the loads of the most and the least loaded threads (1 is a perfect balance).
+	 * Threads without any root move are ignored.
+	 */
+	static double getImbalance(long[] leaves, int threads) {
+		final List<Long> sorted = new ArrayList<>(leaves.length);
+		Arrays.stream(leaves).forEach(sorted::add);
+		Collections.sort(sorted, Collections.reverseOrder());
+		final long[] loads = new long[Math.min(threads, leaves.length)];
+		for (long count : sorted) {
+			int least = 0;
+			for (int i = 1; i < loads.length; i++) {
+				if (loads[i]<loads[least]) {
+					least = i;
+				}
+			}
+			loads[least] += count;
+		}
+		final long max = Arrays.stream(loads).max().orElse(0);
+		final long min = Arrays.stream(loads).min().orElse(0);
+		return min==0 ? 1.0 : (double)max/min;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		final SplitPerftTask<M> task = current;
+		if (task!=null) {
+			task.stop();
+		}
+	}
+}
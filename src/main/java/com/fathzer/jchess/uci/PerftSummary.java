@@ -0,0 +1,61 @@
+package com.fathzer.jchess.uci;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fathzer.games.perft.PerfTResult;
+
+/** The result of a perft, with its divide expressed as UCI moves.
+ */
+class PerftSummary {
+	private final Map<String, Long> divides;
+	private final long nbLeaves;
+	private final long nbMovesFound;
+	private final long nbMovesMade;
+	private final boolean interrupted;
+	
+	PerftSummary(Map<String, Long> divides, long nbLeaves, long nbMovesFound, long nbMovesMade, boolean interrupted) {
+		this.divides = Collections.unmodifiableMap(divides);
+		this.nbLeaves = nbLeaves;
+		this.nbMovesFound = nbMovesFound;
+		this.nbMovesMade = nbMovesMade;
+		this.interrupted = interrupted;
+	}
+	
+	/** Converts a perft result.
+	 * @param <M> The class of moves
+	 * @param result The result to convert
+	 * @param toUCI A function that converts moves to UCI
+	 * @return a new summary
+	 */
+	static <M> PerftSummary of(PerfTResult<M> result, Function<M, String> toUCI) {
+		final Map<String, Long> divides = new LinkedHashMap<>();
+		result.getDivides().forEach(d -> divides.put(toUCI.apply(d.getMove()), d.getCount()));
+		return new PerftSummary(divides, result.getNbLeaves(), result.getNbMovesFound(), result.getNbMovesMade(), result.isInterrupted());
+	}
+
+	/** Gets the number of leaves of each root move.
+	 * @return A map whose keys are the root moves in UCI format.
+	 */
+	Map<String, Long> getDivides() {
+		return divides;
+	}
+
+	long getNbLeaves() {
+		return nbLeaves;
+	}
+
+	long getNbMovesFound() {
+		return nbMovesFound;
+	}
+
+	long getNbMovesMade() {
+		return nbMovesMade;
+	}
+
+	boolean isInterrupted() {
+		return interrupted;
+	}
+}
@@ -6,9 +6,10 @@ import com.fathzer.games.MoveGenerator;
 import com.fathzer.games.perft.PerfT;
 import com.fathzer.games.perft.PerfTResult;
 import com.fathzer.games.util.ContextualizedExecutor;
+import com.fathzer.jchess.uci.jfr.PerftEvent;
 
 class PerftTask<M> extends LongRunningTask<PerfTResult<M>> {
-	private PerfT<M> perft;
+	private volatile PerfT<M> perft;
 	private final Supplier<MoveGenerator<M>> engine;
 	private final int depth;
 	private final int parallelism;
@@ -22,16 +23,38 @@ class PerftTask<M> extends LongRunningTask<PerfTResult<M>> {
 
 	@Override
 	public PerfTResult<M> get() {
+		final PerftEvent event = new PerftEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		final PerfTResult<M> result;
 		try (ContextualizedExecutor<MoveGenerator<M>> exec = new ContextualizedExecutor<>(parallelism)) {
 			this.perft = new PerfT<>(exec);
-			return perft.divide(depth, engine::get);
+			if (isStopped()) {
+				// Stop was requested before perft was created
+				perft.interrupt();
+			}
+			result = perft.divide(depth, engine::get);
 		}
+		if (event.shouldCommit()) {
+			final long duration = System.nanoTime() - start;
+			event.kind = "perft";
+			event.depth = depth;
+			event.parallelism = parallelism;
+			event.leaves = result.getNbLeaves();
+			event.leavesPerSecond = duration==0 ? 0 : result.getNbLeaves()*1_000_000_000L/duration;
+			event.interrupted = result.isInterrupted();
+			event.commit();
+		}
+		return result;
 	}
 
 	@Override
 	public void stop() {
 		super.stop();
-		perft.interrupt();
+		final PerfT<M> current = perft;
+		if (current!=null) {
+			current.interrupt();
+		}
 	}
 
 }
@@ -0,0 +1,89 @@
+package com.fathzer.jchess.uci;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** An immutable position: A start position and the moves played from it.
+ */
+class Position {
+	static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+	private static final String MOVES = "moves";
+
+	private final String fen;
+	private final List<UCIMove> moves;
+	
+	Position(String fen, List<UCIMove> moves) {
+		this.fen = fen;
+		this.moves = Collections.unmodifiableList(moves);
+	}
+	
+	/** Parses the arguments of a UCI position command.
+	 * @param tokens The tokens of the command (for example: startpos, moves, e2e4)
+	 * @return a position
+	 * @throws IllegalArgumentException if the tokens are not a valid position definition
+	 */
+	static Position parse(String[] tokens) {
+		final String fen;
+		if (tokens.length==0) {
+			throw new IllegalArgumentException("invalid position definition");
+		} else if ("fen".equals(tokens[0])) {
+			fen = Arrays.stream(tokens).skip(1).takeWhile(t -> !MOVES.equals(t)).collect(Collectors.joining(" "));
+		} else if ("startpos".equals(tokens[0])) {
+			fen = START_FEN;
+		} else {
+			throw new IllegalArgumentException("invalid position definition");
+		}
+		final List<UCIMove> moves = Arrays.stream(tokens).dropWhile(t->!MOVES.equals(t)).skip(1).map(UCIMove::from).collect(Collectors.toList());
+		return new Position(fen, moves);
+	}
+
+	String getFEN() {
+		return fen;
+	}
+
+	List<UCIMove> getMoves() {
+		return moves;
+	}
+	
+	/** Gets the position reached after a move.
+	 * @param move The move to play
+	 * @return A new position
+	 */
+	Position play(UCIMove move) {
+		final List<UCIMove> next = new ArrayList<>(moves.size()+1);
+		next.addAll(moves);
+		next.add(move);
+		return new Position(fen, next);
+	}
+	
+	/** Sets this position in an engine.
+	 * @param engine The engine
+	 */
+	void setTo(Engine engine) {
+		engine.setStartPosition(fen);
+		moves.forEach(engine::move);
+	}
+	
+	/** Sets this position in an engine and records the hash of each position of the game.
+	 * @param engine The engine
+	 * @param history The history where to record the hashes (it is cleared first)
+	 */
+	void setTo(GameHistoryAware engine, GameHistory history) {
+		final Engine e = (Engine) engine;
+		history.clear();
+		e.setStartPosition(fen);
+		history.add(engine.getPositionHash());
+		for (UCIMove move : moves) {
+			e.move(move);
+			history.add(engine.getPositionHash());
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return moves.isEmpty() ? fen : fen+" "+MOVES+" "+moves.stream().map(UCIMove::toString).collect(Collectors.joining(" "));
+	}
+}
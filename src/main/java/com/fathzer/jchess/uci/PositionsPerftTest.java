@@ -0,0 +1,246 @@
+package com.fathzer.jchess.uci;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.fathzer.games.perft.PerfTTestData;
+import com.fathzer.games.perft.TestableMoveGeneratorSupplier;
+import com.fathzer.jchess.uci.SplitPerftTask.Divides;
+
+/** A move generator test that spreads whole positions over threads.
+ * <br>Cheap positions are grouped in chunks that are processed by a work-stealing pool, each position being computed by a single thread.
+ * Expensive positions are processed first, one after the other, each one being split between all the threads.
+ * <br>The cost of a position is its expected leaf count at the tested depth. Each thread uses its own engine instance, reused for all the positions of a chunk
+ * and for the next chunks, and computes the perft of cheap positions itself (see {@link GeneratorPerft}). Expensive positions are computed by a {@link SplitPerftTask}.
+ * @param <M> The class of the moves
+ */
+class PositionsPerftTest<M> extends LongRunningTask<Long> {
+	/** The number of chunks per thread; more chunks balance the load better, at the price of more scheduling */
+	private static final int CHUNKS_PER_THREAD = 16;
+	/** A position is expensive if its cost exceeds the total cost divided by this factor and the number of threads */
+	private static final int EXPENSIVE_FACTOR = 4;
+
+	/** How positions are processed.
+	 */
+	static class Plan {
+		private final List<Integer> expensive;
+		private final List<List<Integer>> chunks;
+
+		private Plan(List<Integer> expensive, List<List<Integer>> chunks) {
+			this.expensive = expensive;
+			this.chunks = chunks;
+		}
+
+		/** Gets the expensive positions.
+		 * @return The indexes of the positions to split between threads.
+		 */
+		List<Integer> getExpensive() {
+			return expensive;
+		}
+
+		/** Gets the chunks of cheap positions.
+		 * @return The indexes of the positions of each chunk, largest chunks first.
+		 */
+		List<List<Integer>> getChunks() {
+			return chunks;
+		}
+	}
+
+	private final List<PerfTTestData> testData;
+	private final Supplier<TestableMoveGeneratorSupplier<M>> engineFactory;
+	private final int depth;
+	private final int parallelism;
+	private final Consumer<RuntimeException> errorManager;
+	private final Consumer<String> countErrorManager;
+	private final BlockingQueue<TestableMoveGeneratorSupplier<M>> engines = new LinkedBlockingQueue<>();
+	private final Set<Runnable> running = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger positions = new AtomicInteger();
+
+	/** Constructor.
+	 * @param testData The positions to test
+	 * @param engineFactory A supplier of engine instances (it will be called at most <i>parallelism</i> times).
+	 * @param depth The depth of the test
+	 * @param parallelism The number of threads
+	 * @param errorManager The consumer of exceptions thrown by engines
+	 * @param countErrorManager The consumer of count error messages
+	 */
+	PositionsPerftTest(List<PerfTTestData> testData, Supplier<TestableMoveGeneratorSupplier<M>> engineFactory, int depth, int parallelism,
+			Consumer<RuntimeException> errorManager, Consumer<String> countErrorManager) {
+		this.testData = testData;
+		this.engineFactory = engineFactory;
+		this.depth = depth;
+		this.parallelism = parallelism;
+		this.errorManager = errorManager;
+		this.countErrorManager = countErrorManager;
+	}
+
+	/** Computes how positions are processed.
+	 * @param costs The costs of the positions (a negative cost means the position should be skipped)
+	 * @param parallelism The number of threads
+	 * @return a plan
+	 */
+	static Plan plan(long[] costs, int parallelism) {
+		final long total = IntStream.range(0, costs.length).mapToLong(i -> Math.max(0, costs[i])).sum();
+		final long expensiveThreshold = parallelism==1 ? Long.MAX_VALUE : total/((long)parallelism*EXPENSIVE_FACTOR);
+		final List<Integer> expensive = new ArrayList<>();
+		final List<Integer> cheap = new ArrayList<>();
+		for (int i = 0; i < costs.length; i++) {
+			if (costs[i]>=0) {
+				(costs[i]>expensiveThreshold ? expensive : cheap).add(i);
+			}
+		}
+		final Comparator<Integer> byCostDesc = Comparator.comparingLong((Integer i) -> costs[i]).reversed();
+		expensive.sort(byCostDesc);
+		cheap.sort(byCostDesc);
+		final long target = Math.max(1, total/((long)parallelism*CHUNKS_PER_THREAD));
+		final List<List<Integer>> chunks = new ArrayList<>();
+		List<Integer> chunk = new ArrayList<>();
+		long chunkCost = 0;
+		for (int index : cheap) {
+			chunk.add(index);
+			chunkCost += Math.max(1, costs[index]);
+			if (chunkCost>=target) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>();
+				chunkCost = 0;
+			}
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		return new Plan(expensive, chunks);
+	}
+
+	/** Runs the test.
+	 * @return The number of leaves
+	 */
+	@Override
+	public Long get() {
+		final long[] costs = testData.stream().mapToLong(d -> d.getSize()<depth ? -1 : d.getCount(depth)).toArray();
+		final Plan plan = plan(costs, parallelism);
+		long sum = 0;
+		if (!plan.getExpensive().isEmpty()) {
+			final TestableMoveGeneratorSupplier<M> engine = getEngine();
+			try {
+				for (int index : plan.getExpensive()) {
+					if (isStopped()) {
+						return sum;
+					}
+					sum += count(engine, testData.get(index), true);
+				}
+			} finally {
+				engines.add(engine);
+			}
+		}
+		return sum + countChunks(plan.getChunks());
+	}
+	
+	private long countChunks(List<List<Integer>> chunks) {
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		long sum = 0;
+		try {
+			final List<Future<Long>> results = chunks.stream().map(c -> pool.submit(() -> count(c))).collect(Collectors.toList());
+			for (Future<Long> result : results) {
+				sum += result.get();
+			}
+			return sum;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return sum;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	private TestableMoveGeneratorSupplier<M> getEngine() {
+		final TestableMoveGeneratorSupplier<M> engine = engines.poll();
+		return engine==null ? engineFactory.get() : engine;
+	}
+
+	private long count(List<Integer> chunk) {
+		final TestableMoveGeneratorSupplier<M> engine = getEngine();
+		try {
+			long sum = 0;
+			for (int index : chunk) {
+				if (isStopped()) {
+					break;
+				}
+				sum += count(engine, testData.get(index), false);
+			}
+			return sum;
+		} finally {
+			engines.add(engine);
+		}
+	}
+
+	private long count(TestableMoveGeneratorSupplier<M> engine, PerfTTestData data, boolean split) {
+		try {
+			engine.setStartPosition(data.getStartPosition());
+			final long leaves;
+			final boolean interrupted;
+			if (split) {
+				final SplitPerftTask<M> task = SplitPerftTask.of(engine::get, Object::toString, depth, parallelism);
+				final PerftSummary result = run(task::stop, task::get);
+				leaves = result.getNbLeaves();
+				interrupted = result.isInterrupted();
+			} else {
+				final GeneratorPerft<M> perft = new GeneratorPerft<>(engine.get());
+				final Divides<M> result = run(perft::interrupt, () -> perft.divide(Collections.emptyList(), depth));
+				leaves = result.getNbLeaves();
+				interrupted = result.isInterrupted();
+			}
+			if (interrupted) {
+				return leaves;
+			}
+			positions.incrementAndGet();
+			if (leaves!=data.getCount(depth)) {
+				countErrorManager.accept("Error for "+data.getStartPosition()+" expected "+data.getCount(depth)+" got "+leaves);
+			}
+			return leaves;
+		} catch (RuntimeException e) {
+			errorManager.accept(e);
+			return 0;
+		}
+	}
+	
+	private <T> T run(Runnable stopper, Supplier<T> perft) {
+		running.add(stopper);
+		try {
+			if (isStopped()) {
+				stopper.run();
+			}
+			return perft.get();
+		} finally {
+			running.remove(stopper);
+		}
+	}
+
+	/** Gets the number of positions completely tested.
+	 * @return an int
+	 */
+	int getPositions() {
+		return positions.get();
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		running.forEach(Runnable::run);
+	}
+}
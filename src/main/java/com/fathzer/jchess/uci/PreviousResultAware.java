@@ -0,0 +1,12 @@
+package com.fathzer.jchess.uci;
+
+/** An interface of engines able to use a previous search result on the same position as a starting point.
+ * <br>When an {@link AnalysisCache} is active, the UCI layer calls {@link #setPreviousResult(BestMoveReply)} just before calling {@link Engine#go(GoOptions)}
+ * if it has a result for the position to search.
+ */
+public interface PreviousResultAware {
+	/** Sets the result of a previous search on the position that will be searched by the next {@link Engine#go(GoOptions)} call.
+	 * @param previous The previous result.
+	 */
+	void setPreviousResult(BestMoveReply previous);
+}
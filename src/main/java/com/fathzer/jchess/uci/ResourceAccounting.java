@@ -0,0 +1,86 @@
+package com.fathzer.jchess.uci;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fathzer.jchess.uci.metrics.ResourceUsage;
+
+/** The accounting of the resources used by the background tasks of an {@link EngineSession}.
+ * <br>The thread counters are not available on virtual threads. So, if background tasks run on virtual threads (see {@link ThreadFactories#isVirtual()}),
+ * measured tasks run on a platform thread, the calling thread waiting for its end. This platform thread is created once and reused until this instance is closed.
+ */
+final class ResourceAccounting implements AutoCloseable {
+	private volatile ResourceUsage usage;
+	private ExecutorService platform;
+
+	/** Sets the accounting.
+	 * @param usage The accounting to use, null to stop accounting
+	 */
+	void setUsage(ResourceUsage usage) {
+		this.usage = usage;
+	}
+
+	/** Wraps a task in order to record the resources it uses.
+	 * @param name The name under which the resources are recorded
+	 * @param task The task
+	 * @return a task that records the resources used by <i>task</i> if resource accounting is enabled when it runs
+	 */
+	Runnable measured(String name, Runnable task) {
+		return () -> {
+			final ResourceUsage current = usage;
+			if (current==null) {
+				task.run();
+			} else if (ThreadFactories.isVirtual()) {
+				runOnPlatformThread(() -> measure(current, name, task));
+			} else {
+				measure(current, name, task);
+			}
+		};
+	}
+
+	private static void measure(ResourceUsage usage, String name, Runnable task) {
+		final ResourceUsage.Sample sample = usage.start();
+		try {
+			task.run();
+		} finally {
+			usage.record(name, sample);
+		}
+	}
+
+	private void runOnPlatformThread(Runnable task) {
+		final Future<?> future = getPlatformExecutor().submit(task);
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+		}
+	}
+
+	private synchronized ExecutorService getPlatformExecutor() {
+		if (platform==null) {
+			// Thread constructors always build platform threads
+			platform = Executors.newSingleThreadExecutor(r -> {
+				final Thread thread = new Thread(r, "uci-measured");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return platform;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (platform!=null) {
+			platform.shutdown();
+			platform = null;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.fathzer.jchess.uci;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.fathzer.games.MoveGenerator;
+
+/** A utility to get the legal moves of an engine's current position.
+ */
+final class RootMoves {
+	private RootMoves() {
+		super();
+	}
+
+	/** Gets the legal moves of the current position of an engine.
+	 * <br>The moves are obtained, in the calling thread, from a move generator of the engine. Moves refused by the move generator are not legal.
+	 * @param engine The engine
+	 * @return The legal moves in UCI format, or an empty optional if the engine does not implement both {@link MoveGeneratorSupplier} and {@link MoveToUCIConverter}.
+	 */
+	@SuppressWarnings("unchecked")
+	static <M> Optional<List<String>> of(Engine engine) {
+		if (!(engine instanceof MoveGeneratorSupplier) || !(engine instanceof MoveToUCIConverter)) {
+			return Optional.empty();
+		}
+		final MoveGenerator<M> generator = ((MoveGeneratorSupplier<M>) engine).get();
+		final MoveToUCIConverter<M> converter = (MoveToUCIConverter<M>) engine;
+		final List<String> result = new ArrayList<>();
+		for (M move : generator.getMoves()) {
+			if (generator.makeMove(move)) {
+				generator.unmakeMove();
+				result.add(converter.toUCI(move));
+			}
+		}
+		return Optional.of(result);
+	}
+}
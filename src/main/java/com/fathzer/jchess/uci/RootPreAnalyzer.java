@@ -0,0 +1,34 @@
+package com.fathzer.jchess.uci;
+
+import java.util.List;
+import java.util.Optional;
+
+/** An interface of engines able to detect, before searching, positions where a search is useless.
+ * <br>When a search is limited by time, the UCI layer calls these methods before calling {@link Engine#go(GoOptions)} and replies immediately if the
+ * engine finds an immediate mate or a claimable draw, or if only one legal move is searched.
+ * <br>The default implementations detect nothing.
+ */
+public interface RootPreAnalyzer {
+	/** Gets a move that mates immediately in the current position.
+	 * @return The mating move, or an empty optional if there's no mate in one.
+	 */
+	default Optional<UCIMove> getMateInOne() {
+		return Optional.empty();
+	}
+	
+	/** Gets the move that claims a draw in the current position (fifty moves rule, threefold repetition), if the engine wants to claim it.
+	 * <br>If a move is returned, it is played immediately with a 0 score.
+	 * @return The move to play, or an empty optional if the engine does not want to claim a draw. The default implementation returns an empty optional.
+	 */
+	default Optional<UCIMove> getDrawClaimingMove() {
+		return Optional.empty();
+	}
+	
+	/** Gets the legal moves of the current position.
+	 * <br>If only one of these moves is searched, it is played immediately. A single <i>searchmoves</i> move is only played immediately if it is legal.
+	 * @return The legal moves, or an empty optional if they are unknown. The default implementation returns an empty optional.
+	 */
+	default Optional<List<UCIMove>> getLegalMoves() {
+		return Optional.empty();
+	}
+}
@@ -0,0 +1,11 @@
+package com.fathzer.jchess.uci;
+
+/** An interface of engines whose search can be diversified by a seed (for instance a random perturbation of the move ordering).
+ * <br>{@link EnsembleEngine} gives a different seed to each of its instances, which makes them explore different parts of the tree.
+ */
+public interface Seedable {
+	/** Sets the seed of the next searches.
+	 * @param seed The seed.
+	 */
+	void setSeed(long seed);
+}
@@ -0,0 +1,250 @@
+package com.fathzer.jchess.uci;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.fathzer.games.MoveGenerator;
+import com.fathzer.jchess.uci.jfr.PerftEvent;
+
+/** A parallel perft that splits the work deeper than the root moves.
+ * <br>{@link PerftTask} shares the root moves between threads, so, in lopsided positions, one large root subtree keeps a thread busy long after the others are idle.
+ * <br>This task expands the tree, one ply after the other (at most {@value #MAX_SPLIT_PLY} plies), until there are at least {@value #UNITS_PER_THREAD} subtrees per thread.
+ * These subtrees are queued and threads take the next one as soon as they are done, so they remain busy until the queue is empty.
+ * The divide is still reported at the root.
+ * <br>Subtrees are identified by the moves (in the move generator's format) that lead to them from the root. Each thread has its own {@link SubtreePerft},
+ * for instance its own move generator, so the engine is never accessed by more than one thread.
+ * <br>The moves found and made during the expansion are not counted.
+ * @param <M> The class of the moves
+ */
+class SplitPerftTask<M> extends LongRunningTask<PerftSummary> {
+	static final int MAX_SPLIT_PLY = 3;
+	static final int UNITS_PER_THREAD = 8;
+
+	/** The perft of the subtrees of a position.
+	 * <br>Instances are used by a single thread.
+	 * @param <M> The class of the moves
+	 */
+	interface SubtreePerft<M> extends AutoCloseable {
+		/** Divides a subtree.
+		 * @param path The moves that lead from the root to the subtree
+		 * @param depth The depth of the divide
+		 * @return The divide
+		 */
+		Divides<M> divide(List<M> path, int depth);
+
+		/** Interrupts the current divide and the next ones.
+		 * <br>This method can be called by any thread.
+		 */
+		void interrupt();
+
+		@Override
+		void close();
+	}
+
+	/** The result of a divide.
+	 * @param <M> The class of the moves
+	 */
+	static class Divides<M> {
+		private final Map<M, Long> counts;
+		private final long nbMovesFound;
+		private final long nbMovesMade;
+		private final boolean interrupted;
+
+		/** Constructor.
+		 * @param counts The number of leaves of each move, in the move generator's order
+		 * @param nbMovesFound The number of moves found
+		 * @param nbMovesMade The number of moves made
+		 * @param interrupted true if the divide was interrupted
+		 */
+		Divides(Map<M, Long> counts, long nbMovesFound, long nbMovesMade, boolean interrupted) {
+			this.counts = counts;
+			this.nbMovesFound = nbMovesFound;
+			this.nbMovesMade = nbMovesMade;
+			this.interrupted = interrupted;
+		}
+
+		long getNbLeaves() {
+			return counts.values().stream().mapToLong(Long::longValue).sum();
+		}
+
+		boolean isInterrupted() {
+			return interrupted;
+		}
+	}
+
+	private final Supplier<SubtreePerft<M>> perfts;
+	private final Function<M, String> toUCI;
+	private final int depth;
+	private final int parallelism;
+	private final Set<SubtreePerft<M>> running = ConcurrentHashMap.newKeySet();
+
+	/** Builds a task that plays the subtrees on move generators.
+	 * @param <M> The class of the moves
+	 * @param generators The supplier of move generators on the position to test. It is called by the thread that executes this task, once per thread.
+	 * @see GeneratorPerft
+	 * @param toUCI A function that converts moves to UCI
+	 * @param depth The perft depth
+	 * @param parallelism The number of threads
+	 * @return a new task
+	 */
+	static <M> SplitPerftTask<M> of(Supplier<MoveGenerator<M>> generators, Function<M, String> toUCI, int depth, int parallelism) {
+		return new SplitPerftTask<>(() -> new GeneratorPerft<>(generators.get()), toUCI, depth, parallelism);
+	}
+
+	/** Constructor.
+	 * @param perfts The supplier of subtree perfts. It is called by the thread that executes this task, once per thread.
+	 * @param toUCI A function that converts moves to UCI
+	 * @param depth The perft depth
+	 * @param parallelism The number of threads
+	 */
+	SplitPerftTask(Supplier<SubtreePerft<M>> perfts, Function<M, String> toUCI, int depth, int parallelism) {
+		this.perfts = perfts;
+		this.toUCI = toUCI;
+		this.depth = depth;
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public PerftSummary get() {
+		final PerftEvent event = new PerftEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		final List<SubtreePerft<M>> workers = new ArrayList<>(parallelism);
+		final PerftSummary result;
+		try {
+			for (int i = 0; i < parallelism; i++) {
+				workers.add(perfts.get());
+			}
+			result = split(workers);
+		} finally {
+			workers.forEach(SubtreePerft::close);
+		}
+		if (event.shouldCommit()) {
+			final long duration = System.nanoTime() - start;
+			event.kind = "perft";
+			event.depth = depth;
+			event.parallelism = parallelism;
+			event.leaves = result.getNbLeaves();
+			event.leavesPerSecond = duration==0 ? 0 : result.getNbLeaves()*1_000_000_000L/duration;
+			event.interrupted = result.isInterrupted();
+			event.commit();
+		}
+		return result;
+	}
+
+	private PerftSummary split(List<SubtreePerft<M>> workers) {
+		// Expand the tree until there's enough subtrees
+		List<List<M>> units = Collections.singletonList(Collections.emptyList());
+		final Map<M, Long> rootDivides = new LinkedHashMap<>();
+		int ply = 0;
+		while (ply<MAX_SPLIT_PLY && ply<depth-1 && units.size()<UNITS_PER_THREAD*parallelism && !isStopped()) {
+			final List<List<M>> next = new ArrayList<>();
+			for (List<M> unit : units) {
+				for (Map.Entry<M, Long> divide : divide(workers.get(0), unit, 1).counts.entrySet()) {
+					if (divide.getValue()==0) {
+						// Not a legal move
+						continue;
+					}
+					final List<M> child = new ArrayList<>(unit.size()+1);
+					child.addAll(unit);
+					child.add(divide.getKey());
+					next.add(child);
+				}
+			}
+			if (ply==0) {
+				// Root moves are reported in the move generator's order, even those without any subtree at the split ply
+				next.forEach(u -> rootDivides.put(u.get(0), 0L));
+			}
+			units = next;
+			ply++;
+		}
+		final List<Divides<M>> results = run(workers, units, depth-ply);
+		long nbMovesFound = 0;
+		long nbMovesMade = 0;
+		boolean interrupted = isStopped();
+		for (int i = 0; i < results.size(); i++) {
+			final Divides<M> result = results.get(i);
+			if (result==null) {
+				interrupted = true;
+				continue;
+			}
+			interrupted = interrupted || result.interrupted;
+			nbMovesFound += result.nbMovesFound;
+			nbMovesMade += result.nbMovesMade;
+			if (ply==0) {
+				rootDivides.putAll(result.counts);
+			} else {
+				rootDivides.merge(units.get(i).get(0), result.getNbLeaves(), Long::sum);
+			}
+		}
+		final Map<String, Long> divides = new LinkedHashMap<>();
+		rootDivides.forEach((move, count) -> divides.put(toUCI.apply(move), count));
+		final long nbLeaves = rootDivides.values().stream().mapToLong(Long::longValue).sum();
+		return new PerftSummary(divides, nbLeaves, nbMovesFound, nbMovesMade, interrupted);
+	}
+
+	/** Divides the units with all the workers.
+	 * @return The divides of the units (null for units not processed because the task was stopped)
+	 */
+	private List<Divides<M>> run(List<SubtreePerft<M>> workers, List<List<M>> units, int remaining) {
+		final AtomicInteger nextUnit = new AtomicInteger();
+		final List<Divides<M>> results = new ArrayList<>(Collections.nCopies(units.size(), null));
+		final ExecutorService exec = Executors.newFixedThreadPool(parallelism, ThreadFactories.get("uci-perft"));
+		try {
+			final List<Future<?>> futures = new ArrayList<>(workers.size());
+			for (SubtreePerft<M> worker : workers) {
+				futures.add(exec.submit(() -> {
+					for (int i = nextUnit.getAndIncrement(); i<units.size() && !isStopped(); i = nextUnit.getAndIncrement()) {
+						final Divides<M> result = divide(worker, units.get(i), remaining);
+						synchronized (results) {
+							results.set(i, result);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stop();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+		} finally {
+			exec.shutdownNow();
+		}
+		synchronized (results) {
+			return new ArrayList<>(results);
+		}
+	}
+
+	private Divides<M> divide(SubtreePerft<M> worker, List<M> path, int depth) {
+		running.add(worker);
+		try {
+			if (isStopped()) {
+				worker.interrupt();
+			}
+			return worker.divide(path, depth);
+		} finally {
+			running.remove(worker);
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		running.forEach(SubtreePerft::interrupt);
+	}
+}
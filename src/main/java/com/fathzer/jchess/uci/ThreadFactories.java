@@ -0,0 +1,48 @@
+package com.fathzer.jchess.uci;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** The factories of the threads used by the UCI layer (background tasks, timers and sessions).
+ * <br>This is the Java 11 implementation, it uses platform threads.
+ * On Java 21+, a multi-release implementation uses virtual threads, unless the <i>virtualThreads</i> system property is set to false.
+ */
+public final class ThreadFactories {
+	private ThreadFactories() {
+		super();
+	}
+
+	/** Checks whether the threads created by this class are virtual threads.
+	 * @return true if threads are virtual.
+	 */
+	public static boolean isVirtual() {
+		return false;
+	}
+	
+	/** Gets a thread factory.
+	 * @param name The prefix of the created threads' names. They are named <i>name</i>-0, <i>name</i>-1, etc...
+	 * @return a thread factory.
+	 */
+	public static ThreadFactory get(String name) {
+		final ThreadFactory factory = Executors.defaultThreadFactory();
+		final AtomicInteger count = new AtomicInteger();
+		return task -> {
+			final Thread thread = factory.newThread(task);
+			thread.setName(name+"-"+count.getAndIncrement());
+			return thread;
+		};
+	}
+	
+	/** Starts a new thread.
+	 * <br>This method can be used to run a UCI session (for instance <code>ThreadFactories.start("session", new UCI(engine))</code>).
+	 * @param name The thread's name
+	 * @param task The task to run
+	 * @return The started thread
+	 */
+	public static Thread start(String name, Runnable task) {
+		final Thread thread = new Thread(task, name);
+		thread.start();
+		return thread;
+	}
+}
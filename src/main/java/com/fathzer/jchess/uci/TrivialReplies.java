@@ -0,0 +1,46 @@
+package com.fathzer.jchess.uci;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/** The replies of searches limited by time that do not need to be performed.
+ * <br>This is the case when the engine implements {@link RootPreAnalyzer} and finds a mate in one, wants to claim a draw,
+ * or returns legal moves among which only one is searched.
+ */
+final class TrivialReplies {
+	private TrivialReplies() {
+		super();
+	}
+
+	/** Gets the reply of a search.
+	 * @param engine The engine, set to the searched position
+	 * @param options The go options of a search limited by time
+	 * @return The reply, null if the search should be performed
+	 */
+	static BestMoveReply get(Engine engine, GoOptions options) {
+		if (!(engine instanceof RootPreAnalyzer)) {
+			return null;
+		}
+		final RootPreAnalyzer analyzer = (RootPreAnalyzer) engine;
+		final List<UCIMove> searchMoves = options.getMoveToSearch();
+		final Optional<UCIMove> mate = analyzer.getMateInOne().filter(m -> isSearched(searchMoves, m));
+		if (mate.isPresent()) {
+			return new BestMoveReply(mate.get(), null, 0, 1, null);
+		}
+		final Optional<UCIMove> draw = analyzer.getDrawClaimingMove().filter(m -> isSearched(searchMoves, m));
+		if (draw.isPresent()) {
+			return new BestMoveReply(draw.get(), null, 0, 0, 0);
+		}
+		final Optional<List<UCIMove>> legalMoves = analyzer.getLegalMoves();
+		if (legalMoves.isEmpty()) {
+			return null;
+		}
+		final List<UCIMove> moves = legalMoves.get().stream().filter(m -> isSearched(searchMoves, m)).collect(Collectors.toList());
+		return moves.size()==1 ? new BestMoveReply(moves.get(0)) : null;
+	}
+
+	private static boolean isSearched(List<UCIMove> searchMoves, UCIMove move) {
+		return searchMoves.isEmpty() || searchMoves.stream().anyMatch(m -> m.toString().equals(move.toString()));
+	}
+}
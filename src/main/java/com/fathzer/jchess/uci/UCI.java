@@ -5,26 +5,44 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ServiceLoader;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import com.fathzer.games.perft.TestableMoveGeneratorSupplier;
 import com.fathzer.games.perft.MoveGeneratorChecker;
-import com.fathzer.games.perft.PerfTResult;
 import com.fathzer.games.perft.PerfTTestData;
+import com.fathzer.jchess.uci.jfr.CommandEvent;
+import com.fathzer.jchess.uci.jfr.PerftEvent;
+import com.fathzer.jchess.uci.memory.MemoryGovernor;
+import com.fathzer.jchess.uci.metrics.MetricsServer;
+import com.fathzer.jchess.uci.metrics.ResourceUsage;
+import com.fathzer.jchess.uci.metrics.UCIMetrics;
+import com.fathzer.jchess.uci.persistence.CacheFile;
+import com.fathzer.jchess.uci.record.SessionRecorder;
 import com.fathzer.jchess.uci.option.CheckOption;
 import com.fathzer.jchess.uci.option.Option;
 
@@ -34,24 +52,30 @@ import com.fathzer.jchess.uci.option.Option;
  */
 public class UCI implements Runnable {
 	private static final BufferedReader IN = new BufferedReader(new InputStreamReader(System.in));
-	private static final String MOVES = "moves";
 	private static final String ENGINE_CMD = "engine";
 	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.nnnnnnnn");
 	
-	private Engine engine;
 	private final Map<String, Consumer<String[]>> executors = new HashMap<>();
 	private final Map<String, Engine> engines = new HashMap<>();
+	private final Map<String, EngineFactory> engineFactories = new HashMap<>();
 	
-	private final BackgroundTaskManager backTasks = new BackgroundTaskManager(e -> out(e, 0));
-	private final Option<Boolean> chess960Option = new CheckOption("UCI_Chess960", b -> {if (engine!=null) engine.setChess960(b);}, false);
+	private final EngineSession session;
+	private final Option<Boolean> chess960Option;
 	private boolean debug = Boolean.getBoolean("logToFile");
 	private boolean debugUCI = Boolean.getBoolean("debugUCI");
-	private Map<String, Option<?>> options;
+	private MetricsServer metricsServer;
+	private MemoryGovernor memoryGovernor;
+	private CacheFile cacheFile;
+	private SessionRecorder recorder;
+	private ResourceUsage resourceUsage;
+	private String currentCommand;
+	private Runnable whenIdle;
 	
 	public UCI(Engine defaultEngine) {
 		engines.put(defaultEngine.getId(), defaultEngine);
-		this.engine = defaultEngine;
-		buildOptionsTable(defaultEngine.getOptions());
+		this.session = new EngineSession(defaultEngine, e -> out(e, 0));
+		this.chess960Option = new CheckOption("UCI_Chess960", b -> getEngine().setChess960(b), false);
+		session.setInfoListener(info -> out(toInfo(info)));
 		addCommand(this::doUCI, "uci");
 		addCommand(this::doDebug, "debug");
 		addCommand(this::doSetOption, "setoption");
@@ -64,6 +88,43 @@ public class UCI implements Runnable {
 		addCommand(this::doPerft, "perft");
 		addCommand(this::doEngine,ENGINE_CMD);
 		addCommand(this::doPerfStat,"test");
+		addCommand(this::doStats,"stats");
+		addCommand(this::doAnalyze,"analyze");
+		addCommand(this::doBench,"bench");
+		addCommand(this::doResources,"resources");
+		final Long nodesPerSecond = Long.getLong("nodesPerSecond");
+		if (nodesPerSecond!=null) {
+			session.setNodesPerSecond(nodesPerSecond);
+		}
+		session.setMaxThreads(Integer.getInteger("maxThreads", 0));
+		session.setInstantReply(Long.getLong("instantReplyMs", 0), Integer.getInteger("instantReplyCheckDepth", 0));
+		final int analysisCacheSize = Integer.getInteger("analysisCacheSize", 0);
+		if (analysisCacheSize>0) {
+			session.setAnalysisCache(new AnalysisCache(analysisCacheSize));
+		}
+		final Integer memoryThreshold = Integer.getInteger("memoryThreshold");
+		if (memoryThreshold!=null) {
+			memoryGovernor = new MemoryGovernor(memoryThreshold/100.0);
+			session.setMemoryGovernor(memoryGovernor);
+		}
+		final String cacheFilePath = System.getProperty("cacheFile");
+		if (cacheFilePath!=null) {
+			cacheFile = new CacheFile(Paths.get(cacheFilePath), e -> out(e, 0));
+			cacheFile.setAutoSave(Long.getLong("cacheFileSavePeriod", 300));
+			session.setCacheFile(cacheFile);
+		}
+		final String recordFile = System.getProperty("recordFile");
+		if (recordFile!=null) {
+			recorder = SessionRecorder.to(Paths.get(recordFile));
+		}
+		if (Boolean.getBoolean("resourceAccounting")) {
+			setResourceUsage(new ResourceUsage());
+		}
+		final Integer metricsPort = Integer.getInteger("metricsPort");
+		if (metricsPort!=null) {
+			metricsServer = new MetricsServer(session.getMetrics(), metricsPort);
+			log(false, "Metrics are available at http://localhost:"+metricsServer.getPort()+"/metrics");
+		}
 		if (System.console()!=null) {
 			log(false, "Input from System.console()");
 		} else {
@@ -72,12 +133,40 @@ public class UCI implements Runnable {
 	}
 	
 	public void add(Engine engine) {
-		if (engines.containsKey(engine.getId())) {
-			throw new IllegalArgumentException("There's already an engine with id "+engine.getId());
-		}
+		checkUnknown(engine.getId());
 		engines.put(engine.getId(), engine);
 	}
 
+	/** Adds an engine factory.
+	 * <br>The engine will only be instantiated when it is selected by the <i>engine</i> command.
+	 * <br>The factory is also used by commands that need many instances of the engine (see {@link #getEngineFactory()}).
+	 * @param factory The factory
+	 * @throws IllegalArgumentException if there's already an engine with the same id.
+	 */
+	public void add(EngineFactory factory) {
+		checkUnknown(factory.getId());
+		engineFactories.put(factory.getId(), factory);
+	}
+	
+	private void checkUnknown(String engineId) {
+		if (engines.containsKey(engineId) || engineFactories.containsKey(engineId)) {
+			throw new IllegalArgumentException("There's already an engine with id "+engineId);
+		}
+	}
+	
+	/** Adds all the {@link EngineFactory} available through the {@link ServiceLoader} mechanism.
+	 * <br>Factories whose id is already registered are ignored.
+	 */
+	public void loadEngineFactories() {
+		ServiceLoader.load(EngineFactory.class).forEach(factory -> {
+			if (engines.containsKey(factory.getId()) || engineFactories.containsKey(factory.getId())) {
+				debug("Engine "+factory.getId()+" is already registered");
+			} else {
+				add(factory);
+			}
+		});
+	}
+
 	protected void addCommand(Consumer<String[]> method, String... commands) {
 		Arrays.stream(commands).forEach(c -> executors.put(c, method));
 	}
@@ -97,13 +186,14 @@ public class UCI implements Runnable {
 	}
 
 	protected void doUCI(String[] tokens) {
+		final Engine engine = getEngine();
 		out("id name "+engine.getId());
 		final String author = engine.getAuthor();
 		if (author!=null) {
 			out("id author "+author);
 		}
 		boolean hasChess960 = false;
-		for (Option<?> option : options.values()) {
+		for (Option<?> option : session.getOptions()) {
 			if (chess960Option.getName().equals(option.getName())) {
 				hasChess960 = true;
 			}
@@ -128,12 +218,11 @@ public class UCI implements Runnable {
 		if (name.isEmpty()) {
 			return "Option name is empty";
 		}
-		final Option<?> option = options.get(name);
-		if (option==null) {
+		if (session.getOption(name)==null) {
 			return "Unknown option";
 		}
 		try {
-			option.setValue(value.isEmpty()?null:value);
+			session.setOption(name, value.isEmpty()?null:value);
 			return null;
 		} catch (IllegalArgumentException e) {
 			return "Value "+value+" is illegal";
@@ -148,57 +237,88 @@ public class UCI implements Runnable {
 	}
 	
 	protected void doIsReady(String[] tokens) {
+		final long start = System.nanoTime();
+		if (session.getOptions().stream().anyMatch(Option::isPending)) {
+			// The engine is not ready before the changes are applied, which happens after the running search (if any)
+			applyDeferredOptions().thenRun(() -> readyOk(start));
+		} else {
+			readyOk(start);
+		}
+	}
+	
+	private void readyOk(long start) {
 		out("readyok");
+		session.getMetrics().readyReplied(System.nanoTime()-start);
 	}
 
 	protected void doNewGame(String[] tokens) {
-		getEngine().newGame();
+		// Deferred options are applied by the session before the new game starts
+		session.newGame();
+	}
+	
+	/** Applies the pending changes of deferred options.
+	 * <br>If a background task is running, changes are applied when it is completed.
+	 * @return A future completed when the changes are applied
+	 * @see Option#deferred(Option...)
+	 */
+	protected CompletableFuture<Void> applyDeferredOptions() {
+		return session.applyDeferredOptions().thenAccept(applied -> {
+			if (Boolean.TRUE.equals(applied)) {
+				debug("Deferred options applied");
+			}
+		});
 	}
 
 	protected void doPosition(String[] tokens) {
-		final String fen;
-		if ("fen".equals(tokens[0])) {
-			fen = getFEN(Arrays.copyOfRange(tokens, 1, tokens.length));
-		} else if ("startpos".equals(tokens[0])) {
-			fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
-		} else {
-			debug("invalid position definition");
+		final Position position;
+		try {
+			position = Position.parse(tokens);
+		} catch (IllegalArgumentException e) {
+			debug(e.getMessage()==null ? "invalid position definition" : e.getMessage());
 			return;
 		}
-		log("Setting board to FEN",fen);
-		getEngine().setStartPosition(fen);
-		Arrays.stream(tokens).dropWhile(t->!MOVES.equals(t)).skip(1).forEach(this::doMove);
-	}
-	
-	private void doMove(String move) {
-		log("Moving",move);
-		getEngine().move(UCIMove.from(move));
-	}
-	
-	private String getFEN(String[] tokens) {
-		return Arrays.stream(tokens).takeWhile(t -> !MOVES.equals(t)).collect(Collectors.joining(" "));
+		log("Setting board to",position.toString());
+		// If a search is running, the position will be set after the search is completed 
+		session.setPosition(position);
 	}
 	
 	protected void doBackground(Runnable task, Runnable stopper) {
-		if (!backTasks.doBackground(task, stopper)) {
+		if (!session.doBackground(session.measured(currentCommand+" task", task), stopper)) {
 			debug("Engine is already working");
 		}
 	}
 
 	protected void doGo(String[] tokens) {
-		if (engine.getFEN()==null) {
-			debug("No position defined");
-		} else {
-			final Optional<GoOptions> goOptions = getParams(Arrays.asList(tokens));
-			if (goOptions.isPresent()) {
-				final LongRunningTask<BestMoveReply> task = engine.go(goOptions.get());
-				doBackground(() -> {
-					final BestMoveReply reply = task.get();
+		final Optional<GoOptions> goOptions = getParams(Arrays.asList(tokens));
+		if (goOptions.isPresent()) {
+			session.go(goOptions.get()).whenComplete((reply, e) -> {
+				if (reply!=null) {
 					out("bestmove "+reply.getMove()+(reply.getPonderMove().isEmpty()?"":(" "+reply.getPonderMove().get())));
-				}, task::stop);
-			}
+				} else if (e instanceof IllegalStateException) {
+					debug(e.getMessage());
+				}
+			});
+		}
+	}
+	
+	/** Converts an intermediate search result to an <i>info</i> line.
+	 * @param info The intermediate result sent by an {@link InfoEmitter} engine
+	 * @return a String
+	 */
+	static String toInfo(BestMoveReply info) {
+		final StringBuilder result = new StringBuilder("info");
+		if (info.getDepth()>0) {
+			result.append(" depth ").append(info.getDepth());
 		}
+		info.getScore().ifPresent(s -> result.append(" score cp ").append(s));
+		if (info.getNodes()>0) {
+			result.append(" nodes ").append(info.getNodes());
+		}
+		result.append(" pv");
+		info.getPrincipalVariation().forEach(m -> result.append(' ').append(m));
+		return result.toString();
 	}
+
 	private Optional<GoOptions> getParams(List<String> tokens) {
 		try {
 			final GoOptions result = new GoOptions(tokens);
@@ -211,7 +331,7 @@ public class UCI implements Runnable {
 	}
 	
 	protected void doStop(String[] tokens) {
-		if (!backTasks.stop()) {
+		if (!session.stop()) {
 			debug("Nothing to stop");
 		}
 	}
@@ -227,6 +347,7 @@ public class UCI implements Runnable {
 	}
 	
 	protected <M> void doPerft(String[] tokens) {
+		final Engine engine = getEngine();
 		if (engine.getFEN()==null) {
 			debug("No position defined");
 			return;
@@ -235,26 +356,42 @@ public class UCI implements Runnable {
 			debug("perft is not supported by this engine");
 			return;
 		}
+		if (tokens.length>0 && "scale".equals(tokens[0])) {
+			@SuppressWarnings("unchecked")
+			final MoveGeneratorSupplier<M> supplier = (MoveGeneratorSupplier<M>)engine;
+			doPerftScale(supplier, Arrays.copyOfRange(tokens, 1, tokens.length));
+			return;
+		}
 		Optional<List<Integer>> params = new ParamsParser<>(this::debug, Integer::parseInt, (i,v) -> v>0).parse(tokens, Arrays.asList("search depth", "number of threads"), Arrays.asList(null, 1));
 		if (params.isEmpty()) {
 			return;
 		}
 		final int depth = params.get().get(0);
-		final int parallelism = params.get().get(1);
+		final int parallelism = capThreads(params.get().get(1));
 		@SuppressWarnings("unchecked")
-		final LongRunningTask<PerfTResult<M>> task = new PerftTask<>((MoveGeneratorSupplier<M>)engine, depth, parallelism);
+		final MoveGeneratorSupplier<M> generators = (MoveGeneratorSupplier<M>)engine;
+		final SplitPerftTask<M> task = SplitPerftTask.of(generators, this::toString, depth, parallelism);
 		doBackground(() -> doPerft(task, parallelism), task::stop);
 	}
 
-	private <M> void doPerft(LongRunningTask<PerfTResult<M>> task, int parallelism) {
+	private <M> void doPerftScale(MoveGeneratorSupplier<M> engine, String[] tokens) {
+		final Optional<List<Integer>> params = new ParamsParser<>(this::debug, Integer::parseInt, (i,v) -> v>0).parse(tokens, Arrays.asList("search depth", "maximum number of threads"), Arrays.asList(null, Runtime.getRuntime().availableProcessors()));
+		if (params.isEmpty()) {
+			return;
+		}
+		final PerftScale<M> task = new PerftScale<>(engine, params.get().get(0), capThreads(params.get().get(1)), this::out);
+		doBackground(task::get, task::stop);
+	}
+
+	private void doPerft(LongRunningTask<PerftSummary> task, int parallelism) {
 		final long start = System.currentTimeMillis(); 
-		final PerfTResult<M> result = task.get();
+		final PerftSummary result = task.get();
 
 		final long duration = System.currentTimeMillis() - start;
 		if (result.isInterrupted()) {
 			out("perft process has been interrupted");
 		} else {
-			result.getDivides().stream().forEach(d -> out (toString(d.getMove())+": "+d.getCount()));
+			result.getDivides().forEach((move, count) -> out (move+": "+count));
 			final long sum = result.getNbLeaves();
 			out("perft "+f(sum)+" leaves in "+f(duration)+"ms ("+f(sum*1000/duration)+" leaves/s) (using "+parallelism+" thread(s))");
 			out("perft "+f(result.getNbMovesFound())+" moves generated ("+f(result.getNbMovesFound()*1000/duration)+" mv/s). " + 
@@ -263,13 +400,18 @@ public class UCI implements Runnable {
 	}
 	
 	private <M> String toString(M move) {
-		return (getEngine() instanceof MoveToUCIConverter) ? ((MoveToUCIConverter<M>)engine).toUCI(move) : move.toString();
+		final Engine engine = getEngine();
+		return (engine instanceof MoveToUCIConverter) ? ((MoveToUCIConverter<M>)engine).toUCI(move) : move.toString();
 	}
 	
 	protected void doPerfStat(String[] tokens) {
 		if (! (getEngine() instanceof TestableMoveGeneratorSupplier)) {
 			debug("test is not supported by this engine");
 		}
+		if (tokens.length>0 && "positions".equals(tokens[0])) {
+			doPositionsTest(Arrays.copyOfRange(tokens, 1, tokens.length));
+			return;
+		}
 		final Optional<List<Integer>> params = new ParamsParser<>(this::debug, Integer::parseInt, (i,v)->v>0).parse(tokens, Arrays.asList("search depth", "number of threads", "cut time"), Arrays.asList(null,1,Integer.MAX_VALUE));
 		if (params.isEmpty()) {
 			return;
@@ -281,7 +423,7 @@ public class UCI implements Runnable {
 			return;
 		}
 		final int depth = params.get().get(0);
-		final int parallelism = params.get().get(1);
+		final int parallelism = capThreads(params.get().get(1));
 		final int cutTime = params.get().get(2);
 		doPerfStat(testData, (TestableMoveGeneratorSupplier<?>)getEngine(), depth, parallelism, cutTime);
 	}
@@ -290,62 +432,372 @@ public class UCI implements Runnable {
 		final MoveGeneratorChecker test = new MoveGeneratorChecker(testData);
 		test.setErrorManager(e-> out(e,0));
 		test.setCountErrorManager(e -> out("Error for "+e.getStartPosition()+" expected "+e.getExpectedCount()+" got "+e.getActualCount()));
-		final TimerTask task = new TimerTask() {
-			@Override
-			public void run() {
-				doStop(null);
-			}
-		};
 		doBackground(() -> {
-			final Timer timer = new Timer();
-			timer.schedule(task, 1000L*cutTime);
+			final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(ThreadFactories.get("uci-timer"));
+			timer.schedule(() -> doStop(null), cutTime, TimeUnit.SECONDS);
+			final PerftEvent event = new PerftEvent();
 			try {
+				event.begin();
 				final long start = System.currentTimeMillis();
 				long sum = test.run(depth, parallelism, engine);
 				final long duration = System.currentTimeMillis() - start;
 				out("perf: "+f(sum)+" moves in "+f(duration)+"ms ("+f(sum*1000/duration)+" mv/s) (using "+parallelism+" thread(s))");
+				if (event.shouldCommit()) {
+					event.kind = "test";
+					event.depth = depth;
+					event.parallelism = parallelism;
+					event.leaves = sum;
+					event.leavesPerSecond = duration==0 ? 0 : sum*1000/duration;
+					event.commit();
+				}
 			} finally {
-				timer.cancel();
+				timer.shutdownNow();
 			}
 			
 		}, test::cancel);
 	}
 	
+	/** Runs the move generator test with positions spread over threads (see {@link PositionsPerftTest}).
+	 * <br>It requires an engine factory, in order to have one engine instance per thread.
+	 * @param tokens The command arguments: search depth, number of threads and cut time.
+	 */
+	@SuppressWarnings("unchecked")
+	private <M> void doPositionsTest(String[] tokens) {
+		final Supplier<Engine> engineFactory = getEngineFactory();
+		if (engineFactory==null) {
+			debug("test positions requires an engine factory");
+			return;
+		}
+		final Optional<List<Integer>> params = new ParamsParser<>(this::debug, Integer::parseInt, (i,v)->v>0).parse(tokens, Arrays.asList("search depth", "number of threads", "cut time"), Arrays.asList(null,Runtime.getRuntime().availableProcessors(),Integer.MAX_VALUE));
+		if (params.isEmpty()) {
+			return;
+		}
+		final List<PerfTTestData> testData = new ArrayList<>(readTestData());
+		if (testData.isEmpty()) {
+			out("No test data available");
+			debug("You may override readTestData to read some data");
+			return;
+		}
+		final int depth = params.get().get(0);
+		final int parallelism = capThreads(params.get().get(1));
+		final int cutTime = params.get().get(2);
+		final PositionsPerftTest<M> test = new PositionsPerftTest<>(testData, () -> (TestableMoveGeneratorSupplier<M>) engineFactory.get(), depth, parallelism, e -> out(e, 0), this::out);
+		doBackground(() -> {
+			final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(ThreadFactories.get("uci-timer"));
+			timer.schedule(() -> doStop(null), cutTime, TimeUnit.SECONDS);
+			final PerftEvent event = new PerftEvent();
+			try {
+				event.begin();
+				final long start = System.currentTimeMillis();
+				final long sum = test.get();
+				final long duration = Math.max(1, System.currentTimeMillis() - start);
+				out("perf: "+f(sum)+" moves in "+f(duration)+"ms ("+f(sum*1000/duration)+" mv/s) (using "+parallelism+" thread(s), "+f(test.getPositions())+" positions tested)");
+				if (event.shouldCommit()) {
+					event.kind = "test positions";
+					event.depth = depth;
+					event.parallelism = parallelism;
+					event.leaves = sum;
+					event.leavesPerSecond = sum*1000/duration;
+					event.commit();
+				}
+			} finally {
+				timer.shutdownNow();
+			}
+		}, test::stop);
+	}
+
+	protected void doStats(String[] tokens) {
+		final UCIMetrics metrics = session.getMetrics();
+		out(UCIMetrics.toString("go", metrics.getSearch()));
+		out(UCIMetrics.toString("position", metrics.getPosition()));
+		out(UCIMetrics.toString("isready", metrics.getIsReady()));
+		out("searches="+metrics.getSearches()+" stops="+metrics.getStops()+" timeouts="+metrics.getTimeouts()+" nodes="+metrics.getNodes());
+	}
+	
+	protected void doResources(String[] tokens) {
+		if (resourceUsage==null) {
+			debug("resource accounting is disabled");
+		} else if (tokens.length==0) {
+			resourceUsage.getSummary().forEach(this::out);
+		} else if (tokens.length==1 && "reset".equals(tokens[0])) {
+			resourceUsage.reset();
+		} else {
+			debug("Wrong argument "+tokens[0]);
+		}
+	}
+	
+	/** Gets the metrics collected by this instance.
+	 * @return a metrics instance
+	 */
+	public UCIMetrics getMetrics() {
+		return session.getMetrics();
+	}
+
+	protected void doAnalyze(String[] tokens) {
+		final Supplier<Engine> engineFactory = getEngineFactory();
+		if (engineFactory==null) {
+			debug("analyze is not supported by this engine");
+			return;
+		}
+		if (tokens.length==0) {
+			debug("Missing position file");
+			return;
+		}
+		final List<String> goOptions = new ArrayList<>();
+		int parallelism = 1;
+		boolean ordered = false;
+		boolean json = false;
+		try {
+			for (int i = 1; i < tokens.length; i++) {
+				if ("depth".equals(tokens[i]) || "nodes".equals(tokens[i])) {
+					goOptions.add(tokens[i]);
+					goOptions.add(Integer.toString(positive(tokens[++i])));
+				} else if ("threads".equals(tokens[i])) {
+					parallelism = positive(tokens[++i]);
+				} else if ("ordered".equals(tokens[i])) {
+					ordered = true;
+				} else if ("json".equals(tokens[i])) {
+					json = true;
+				} else {
+					debug("Unknown analyze option "+tokens[i]);
+					return;
+				}
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			debug("Invalid analyze options");
+			return;
+		}
+		if (goOptions.isEmpty()) {
+			debug("depth or nodes is required");
+			return;
+		}
+		final List<BatchAnalysis.Entry> positions;
+		try (Reader reader = Files.newBufferedReader(Paths.get(tokens[0]), StandardCharsets.UTF_8)) {
+			positions = BatchAnalysis.read(reader);
+		} catch (IOException | IllegalArgumentException e) {
+			debug("Unable to read "+tokens[0]+": "+e.getMessage());
+			return;
+		}
+		final int threads = capThreads(parallelism);
+		final BatchAnalysis task = new BatchAnalysis(positions, engineFactory, goOptions, threads, ordered, json, this::out);
+		doBackground(() -> {
+			final long start = System.currentTimeMillis();
+			final int count = task.get();
+			out("analyze: "+f(count)+"/"+f(positions.size())+" positions analyzed in "+f(System.currentTimeMillis()-start)+"ms (using "+threads+" engine(s))");
+		}, task::stop);
+	}
+	
+	protected void doBench(String[] tokens) {
+		final Optional<List<Integer>> params = new ParamsParser<>(this::debug, Integer::parseInt, (i,v) -> v>0).parse(tokens, Arrays.asList("search depth", "number of threads", "hash size"), Arrays.asList(8, 0, 0));
+		if (params.isEmpty()) {
+			return;
+		}
+		if (session.isRunning()) {
+			debug("Engine is already working");
+			return;
+		}
+		// The values of the options changed by the bench, restored at its end
+		final Map<String, String> previous = new LinkedHashMap<>();
+		if (!setBenchOption("Threads", params.get().get(1), previous) || !setBenchOption("Hash", params.get().get(2), previous)) {
+			restoreOptions(previous);
+			return;
+		}
+		applyDeferredOptions();
+		final GoOptions goOptions = new GoOptions();
+		goOptions.setDepth(params.get().get(0));
+		final Bench task = new Bench(getEngine(), Bench.POSITIONS, goOptions, this::out);
+		// The bench plays its own games with the engine, the session is restored on the command thread when it is completed
+		whenIdle = () -> {
+			restoreOptions(previous);
+			session.newGame();
+			final Position position = session.getPosition();
+			if (position!=null) {
+				session.setPosition(position);
+			}
+		};
+		doBackground(() -> {
+			final long start = System.currentTimeMillis();
+			final long nodes = task.get();
+			final long duration = Math.max(1, System.currentTimeMillis()-start);
+			if (task.isStopped()) {
+				out("bench has been interrupted");
+				return;
+			}
+			if (!task.isNodesReported()) {
+				debug("The engine does not report the number of nodes of all its searches");
+			}
+			out("bench "+f(nodes)+" nodes in "+f(duration)+"ms ("+f(nodes*1000/duration)+" nodes/s)");
+			out("bench signature "+nodes);
+		}, task::stop);
+	}
+	
+	/** Runs the action that restores the session after a background task, if this task is completed.
+	 * <br>This method is called by the command thread before processing each command.
+	 */
+	void runWhenIdleAction() {
+		final Runnable action = whenIdle;
+		if (action!=null && !session.isRunning()) {
+			whenIdle = null;
+			action.run();
+		}
+	}
+	
+	private boolean setBenchOption(String name, int value, Map<String, String> previous) {
+		if (value==0) {
+			return true;
+		}
+		try {
+			final Option<?> option = session.getOption(name);
+			final String current = option==null ? null : String.valueOf(option.getValue());
+			session.setOption(name, Integer.toString(value));
+			previous.put(name, current);
+			return true;
+		} catch (IllegalArgumentException e) {
+			debug(session.getOption(name)==null ? name+" option is not supported by this engine" : "Value "+value+" is illegal for option "+name);
+			return false;
+		}
+	}
+	
+	private void restoreOptions(Map<String, String> previous) {
+		previous.forEach(session::setOption);
+	}
+
+	/** Caps a number of threads to the maximum allowed by the session.
+	 * @param threads A number of threads
+	 * @return The number of threads to use
+	 * @see EngineSession#setMaxThreads(int)
+	 */
+	private int capThreads(int threads) {
+		final int max = session.getMaxThreads();
+		return max>0 ? Math.min(threads, max) : threads;
+	}
+
+	private static int positive(String value) {
+		final int result = Integer.parseInt(value);
+		if (result<=0) {
+			throw new IllegalArgumentException();
+		}
+		return result;
+	}
+
+	/** Gets a supplier of new instances of the current engine.
+	 * <br>This supplier is used by commands that need many instances of the engine (for instance <i>analyze</i>).
+	 * <br>The default implementation returns the factory registered with {@link #add(EngineFactory)} for the current engine,
+	 * or null, which means these commands are not supported, if the current engine was not registered through a factory.
+	 * @return A supplier of new engine instances, or null if the current engine can't be instantiated.
+	 */
+	protected Supplier<Engine> getEngineFactory() {
+		return engineFactories.get(getEngine().getId());
+	}
+
 	protected Collection<PerfTTestData> readTestData() {
 		return Collections.emptyList();
 	}
 
 	protected void doEngine(String[] tokens) {
 		if (tokens.length==0) {
+			final Engine engine = getEngine();
 			out(ENGINE_CMD+" "+engine.getId());
-			engines.keySet().stream().filter(engineId -> !engineId.equals(engine.getId())).forEach(engineId -> out(ENGINE_CMD+" "+engineId));
+			final TreeSet<String> ids = new TreeSet<>(engines.keySet());
+			ids.addAll(engineFactories.keySet());
+			ids.stream().filter(engineId -> !engineId.equals(engine.getId())).forEach(engineId -> out(ENGINE_CMD+" "+engineId));
 			return;
 		}
 		final String engineId = tokens[0];
-		final Engine newEngine = engines.get(engineId);
-		if (newEngine!=null) {
-			if (newEngine.equals(this.engine)) {
-			 return;	
-			}
-			final String pos = getEngine().getFEN();
-			if (pos!=null) {
-				newEngine.setStartPosition(pos);
-			}
-			this.engine = newEngine;
-			buildOptionsTable(newEngine.getOptions());
-			out(ENGINE_CMD+" "+engineId+" ok");
-		} else {
+		if (engineId.equals(getEngine().getId())) {
+			return;
+		}
+		if (!engines.containsKey(engineId) && !engineFactories.containsKey(engineId)) {
 			debug(ENGINE_CMD+" "+engineId+" is unknown");
+		} else if (session.isRunning()) {
+			debug("Engine is working, it can't be changed");
+		} else {
+			session.setEngine(engines.computeIfAbsent(engineId, this::buildEngine));
+			out(ENGINE_CMD+" "+engineId+" ok");
+		}
+	}
+	
+	private Engine buildEngine(String engineId) {
+		log("Building engine",engineId);
+		final Engine result = engineFactories.get(engineId).get();
+		if (!engineId.equals(result.getId())) {
+			throw new IllegalStateException("Factory "+engineId+" built an engine with id "+result.getId());
+		}
+		return result;
+	}
+	
+	/** Sets the cache used to store search results.
+	 * <br>By default, there's no cache, unless the <i>analysisCacheSize</i> system property is set to a strictly positive number of entries.
+	 * <br>The same cache can be shared by many UCI instances.
+	 * @param cache The cache to use, null to disable caching
+	 */
+	public void setAnalysisCache(AnalysisCache cache) {
+		session.setAnalysisCache(cache);
+	}
+	
+	/** Sets the governor that shrinks the analysis cache and the engines that implement {@link com.fathzer.jchess.uci.memory.Shrinkable} when the heap is under pressure.
+	 * <br>By default, there's no governor, unless the <i>memoryThreshold</i> system property is set to a percentage of the heap.
+	 * <br>The same governor can be shared by many UCI instances.
+	 * @param governor The governor to use, null to disable shrinking
+	 */
+	public void setMemoryGovernor(MemoryGovernor governor) {
+		session.setMemoryGovernor(governor);
+	}
+	
+	/** Sets the file where the analysis cache and the engines that implement {@link com.fathzer.jchess.uci.persistence.Persistable} are saved.
+	 * <br>By default, there's no file, unless the <i>cacheFile</i> system property is set to a file path.
+	 * <br>The previous file, if any, is closed (so it is saved) after the engines are unregistered from it.
+	 * The new file is closed when this instance quits.
+	 * @param file The file to use, null to disable persistence
+	 */
+	public void setCacheFile(CacheFile file) {
+		final CacheFile previous = cacheFile;
+		session.setCacheFile(file);
+		this.cacheFile = file;
+		if (previous!=null && previous!=file) {
+			closeCacheFile(previous);
 		}
 	}
 	
+	private void closeCacheFile(CacheFile file) {
+		try {
+			file.close();
+		} catch (UncheckedIOException e) {
+			out(e, 0);
+		}
+	}
+	
+	/** Sets the recorder of the commands received and the replies sent by this instance.
+	 * <br>By default, there's no recorder, unless the <i>recordFile</i> system property is set to a file path.
+	 * <br>Replies are recorded by the default implementation of {@link #out(CharSequence)}.
+	 * @param recorder The recorder to use, null to stop recording
+	 */
+	public void setRecorder(SessionRecorder recorder) {
+		this.recorder = recorder;
+	}
+	
+	/** Sets the accounting of the resources (CPU time and allocated memory) used by commands and background tasks.
+	 * <br>By default, there's no accounting, unless the <i>resourceAccounting</i> system property is set to true.
+	 * <br>Each measure is sent to {@link #debug(CharSequence)}.
+	 * @param resourceUsage The accounting to use, null to stop accounting
+	 */
+	public void setResourceUsage(ResourceUsage resourceUsage) {
+		if (resourceUsage!=null) {
+			resourceUsage.setListener((name, measure) -> debug(name+" "+measure));
+		}
+		this.resourceUsage = resourceUsage;
+		session.setResourceUsage(resourceUsage);
+	}
+	
 	protected Engine getEngine() {
-		return engine;
+		return session.getEngine();
 	}
 	
-	private void buildOptionsTable(Option<?>[] options) {
-		this.options = new HashMap<>();
-		Arrays.stream(options).forEach(o -> this.options.put(o.getName(), o));
+	/** Gets the session that executes the commands.
+	 * @return The session
+	 */
+	protected EngineSession getSession() {
+		return session;
 	}
 
 	private static String f(long num) {
@@ -358,22 +810,53 @@ public class UCI implements Runnable {
 			log("Waiting for command...");
 			final String command=getNextCommand();
 	    	log(">",command);
+			if (recorder!=null) {
+				recorder.command(command);
+			}
 			if ("quit".equals(command) || "q".equals(command)) {
-				backTasks.close();
+				session.close();
+				if (metricsServer!=null) {
+					metricsServer.close();
+				}
+				if (memoryGovernor!=null) {
+					memoryGovernor.close();
+				}
+				if (cacheFile!=null) {
+					closeCacheFile(cacheFile);
+				}
+				if (recorder!=null) {
+					recorder.close();
+				}
 				break;
 			}
+			runWhenIdleAction();
+			final CommandEvent event = new CommandEvent();
+			event.begin();
 			final String[] tokens = command.split(" ");
 			if (!command.isEmpty() && tokens.length>0) {
 				final Consumer<String[]> executor = executors.get(tokens[0]);
 				if (executor==null) {
 					debug("unknown command");
 				} else {
+					currentCommand = tokens[0];
+					final ResourceUsage usage = resourceUsage;
+					final ResourceUsage.Sample sample = usage==null ? null : usage.start();
 					try {
 						executor.accept(Arrays.copyOfRange(tokens, 1, tokens.length));
 					} catch (RuntimeException e) {
 						out(e,0);
+					} finally {
+						if (usage!=null) {
+							usage.record(tokens[0], sample);
+						}
 					}
 				}
+				if (event.shouldCommit()) {
+					event.command = tokens[0];
+					event.line = command;
+					event.known = executor!=null;
+					event.commit();
+				}
 			}
 		}
 	}
@@ -433,15 +916,21 @@ public class UCI implements Runnable {
 	@SuppressWarnings("java:S106")
 	protected void out(CharSequence message) {
     	log(":",message.toString());
+		if (recorder!=null) {
+			recorder.reply(message.toString());
+		}
 		System.out.println(message);
 	}
 	
-	@SuppressWarnings("java:S106")
+	/** Sends a debug message to UCI client.
+	 * <br>The message is sent as an <i>info string</i> reply, through {@link #out(CharSequence)}, only if UCI debug is on.
+	 * @param message The message to send.
+	 */
 	protected void debug(CharSequence message) {
-    	log(":","info","UCI debug is", Boolean.toString(debugUCI),message.toString());
 		if (debugUCI) {
-			System.out.print("info string ");
-			System.out.println(message.toString());
+			out("info string "+message);
+		} else {
+			log(":","info","UCI debug is off",message.toString());
 		}
 	}
 }
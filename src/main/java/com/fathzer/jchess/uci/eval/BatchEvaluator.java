@@ -0,0 +1,190 @@
+package com.fathzer.jchess.uci.eval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fathzer.jchess.uci.ThreadFactories;
+
+/** A service that groups the evaluations requested by concurrent searches into batches.
+ * <br>Some evaluators (neural networks, large tables, GPUs) are much faster when they evaluate many positions in one pass.
+ * This service collects the positions submitted by all the searches of the JVM (many engine instances of a batch analysis,
+ * many UCI sessions, etc...) and sends them to the evaluator in batches of at most <i>batchSize</i> positions.
+ * A batch is evaluated as soon as it is full or when the first submitted position has waited more than <i>maxWait</i>.
+ * <br>Submission and result delivery use a lock-free queue and thread parking, there is no lock on the hot path.
+ * <br>Example: <code>final BatchEvaluator&lt;Board&gt; evaluator = new BatchEvaluator&lt;&gt;(network::evaluate, 64, 200, TimeUnit.MICROSECONDS);</code>
+ * then, in the engines built by your factory, <code>int score = evaluator.evaluate(board.copy());</code>
+ * <br>Please note that the submitted positions are read by another thread, so they should not be modified until evaluated.
+ * @param <P> The type of positions
+ */
+public class BatchEvaluator<P> implements AutoCloseable {
+	/** An evaluator of batches of positions.
+	 * @param <P> The type of positions
+	 */
+	@FunctionalInterface
+	public interface Evaluator<P> {
+		/** Evaluates positions.
+		 * @param positions The positions to evaluate
+		 * @param scores The array where to put the scores (scores[i] is the score of positions.get(i)). Its length may exceed the number of positions.
+		 */
+		void evaluate(List<P> positions, int[] scores);
+	}
+	
+	private static class Request<P> {
+		private final P position;
+		private final Thread waiter;
+		private int score;
+		private RuntimeException error;
+		private volatile boolean done;
+
+		private Request(P position, Thread waiter) {
+			this.position = position;
+			this.waiter = waiter;
+		}
+		
+		private void complete(int score, RuntimeException error) {
+			this.score = score;
+			this.error = error;
+			this.done = true;
+			LockSupport.unpark(waiter);
+		}
+	}
+	
+	private final Evaluator<P> evaluator;
+	private final int batchSize;
+	private final long maxWaitNanos;
+	private final Queue<Request<P>> queue = new ConcurrentLinkedQueue<>();
+	private final Thread dispatcher;
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder evaluations = new LongAdder();
+	private volatile boolean sleeping;
+	private volatile boolean closed;
+
+	/** Constructor.
+	 * @param evaluator The evaluator of batches
+	 * @param batchSize The maximum number of positions in a batch
+	 * @param maxWait The maximum time a position waits for the batch to be full
+	 * @param unit The unit of <i>maxWait</i>
+	 */
+	public BatchEvaluator(Evaluator<P> evaluator, int batchSize, long maxWait, TimeUnit unit) {
+		if (batchSize<1 || maxWait<0) {
+			throw new IllegalArgumentException();
+		}
+		this.evaluator = evaluator;
+		this.batchSize = batchSize;
+		this.maxWaitNanos = unit.toNanos(maxWait);
+		this.dispatcher = ThreadFactories.get("uci-batch-evaluator").newThread(this::dispatch);
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+	
+	/** Evaluates a position.
+	 * <br>The calling thread waits until the batch that contains the position is evaluated.
+	 * @param position The position to evaluate
+	 * @return The score of the position
+	 * @throws IllegalStateException if this service is closed
+	 * @throws RuntimeException the exception thrown by the evaluator, if any
+	 */
+	public int evaluate(P position) {
+		if (closed) {
+			throw new IllegalStateException("Evaluator is closed");
+		}
+		final Request<P> request = new Request<>(position, Thread.currentThread());
+		queue.offer(request);
+		if (sleeping) {
+			LockSupport.unpark(dispatcher);
+		}
+		while (!request.done) {
+			if (closed && queue.remove(request)) {
+				throw new IllegalStateException("Evaluator is closed");
+			}
+			LockSupport.park(this);
+		}
+		if (request.error!=null) {
+			throw request.error;
+		}
+		return request.score;
+	}
+	
+	private void dispatch() {
+		final List<Request<P>> batch = new ArrayList<>(batchSize);
+		final List<P> positions = new ArrayList<>(batchSize);
+		final int[] scores = new int[batchSize];
+		while (!closed) {
+			Request<P> request = queue.poll();
+			if (request==null) {
+				sleeping = true;
+				if (queue.isEmpty() && !closed) {
+					LockSupport.park(this);
+				}
+				sleeping = false;
+				continue;
+			}
+			final long deadline = System.nanoTime()+maxWaitNanos;
+			while (request!=null || (batch.size()<batchSize && System.nanoTime()<deadline && !closed)) {
+				if (request==null) {
+					// Wait for the next submission (submitters unpark the dispatcher) or the deadline
+					sleeping = true;
+					if (queue.isEmpty() && !closed) {
+						LockSupport.parkNanos(this, deadline-System.nanoTime());
+					}
+					sleeping = false;
+				} else {
+					batch.add(request);
+					positions.add(request.position);
+					if (batch.size()==batchSize) {
+						break;
+					}
+				}
+				request = queue.poll();
+			}
+			evaluate(batch, positions, scores);
+			batch.clear();
+			positions.clear();
+		}
+		for (Request<P> request = queue.poll(); request!=null; request = queue.poll()) {
+			request.complete(0, new IllegalStateException("Evaluator is closed"));
+		}
+	}
+
+	private void evaluate(List<Request<P>> batch, List<P> positions, int[] scores) {
+		RuntimeException error = null;
+		try {
+			evaluator.evaluate(positions, scores);
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		batches.increment();
+		evaluations.add(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			batch.get(i).complete(scores[i], error);
+		}
+	}
+	
+	/** Gets the number of evaluated batches.
+	 * @return a long
+	 */
+	public long getBatchCount() {
+		return batches.sum();
+	}
+	
+	/** Gets the number of evaluated positions.
+	 * @return a long
+	 */
+	public long getEvaluationCount() {
+		return evaluations.sum();
+	}
+
+	/** Stops this service.
+	 * <br>Pending evaluations fail with an {@link IllegalStateException}.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(dispatcher);
+	}
+}
@@ -0,0 +1,311 @@
+package com.fathzer.jchess.uci.external;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.fathzer.jchess.uci.BestMoveReply;
+import com.fathzer.jchess.uci.Engine;
+import com.fathzer.jchess.uci.GoOptions;
+import com.fathzer.jchess.uci.InfoEmitter;
+import com.fathzer.jchess.uci.LongRunningTask;
+import com.fathzer.jchess.uci.UCIMove;
+import com.fathzer.jchess.uci.option.ButtonOption;
+import com.fathzer.jchess.uci.option.CheckOption;
+import com.fathzer.jchess.uci.option.ComboOption;
+import com.fathzer.jchess.uci.option.Option;
+import com.fathzer.jchess.uci.option.SpinOption;
+import com.fathzer.jchess.uci.option.StringOption;
+
+/** An {@link Engine} backed by an external UCI engine process.
+ * <br>The process is taken from an {@link ExternalEnginePool} the first time it is needed and returned to the pool when {@link #release()} is called.
+ * <br>The options declared by the process are exposed as options of this engine, they are built once, on the first call to {@link #getOptions()}.
+ * The values changed after that are sent to the process (again if the process changes after a release).
+ * <br>External engines do not report their position, so the FEN returned by {@link #getFEN()} is computed locally.
+ */
+public class ExternalEngine implements Engine, InfoEmitter {
+	private static final String CHESS960 = "UCI_Chess960";
+	private static final String EMPTY = "<empty>";
+	private static final List<String> KEYWORDS = Arrays.asList("type", "default", "min", "max", "var");
+	
+	private final ExternalEnginePool pool;
+	private final Map<String, String> values = new LinkedHashMap<>();
+	private final List<String> moves = new ArrayList<>();
+	private UCIProcess process;
+	private String startFen;
+	private String fen;
+	private Consumer<BestMoveReply> infoListener;
+	private Option<?>[] options;
+	private boolean buildingOptions;
+
+	/** Constructor.
+	 * @param pool The pool that provides the processes.
+	 */
+	public ExternalEngine(ExternalEnginePool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public String getId() {
+		return pool.getName();
+	}
+
+	@Override
+	public String getAuthor() {
+		return pool.getAuthor();
+	}
+
+	@Override
+	public void setInfoListener(Consumer<BestMoveReply> listener) {
+		this.infoListener = listener;
+	}
+
+	@Override
+	public boolean isChess960Supported() {
+		return pool.getOptions().stream().anyMatch(o -> CHESS960.equals(parse(o).get("name")));
+	}
+
+	@Override
+	public void setChess960(boolean chess960Mode) {
+		set(CHESS960, Boolean.toString(chess960Mode));
+	}
+
+	@Override
+	public synchronized Option<?>[] getOptions() {
+		if (options==null) {
+			// Option constructors set the default value, which calls the trigger. The process already has this value
+			buildingOptions = true;
+			try {
+				options = pool.getOptions().stream().map(this::toOption).filter(Objects::nonNull).toArray(Option[]::new);
+			} finally {
+				buildingOptions = false;
+			}
+		}
+		return options;
+	}
+	
+	private Option<?> toOption(String line) {
+		final Map<String, String> fields = parse(line);
+		final String name = fields.get("name");
+		final String type = fields.getOrDefault("type", "");
+		final String def = fields.get("default");
+		if (name==null || CHESS960.equals(name)) {
+			return null;
+		}
+		try {
+			switch (type) {
+			case "check":
+				return new CheckOption(name, v -> set(name, v.toString()), Boolean.parseBoolean(def));
+			case "spin":
+				return new SpinOption(name, v -> set(name, v.toString()), toInt(def), toInt(fields.get("min")), toInt(fields.get("max")));
+			case "combo":
+				return new ComboOption(name, v -> set(name, v), def, new LinkedHashSet<>(Arrays.asList(fields.get("var").split("\n"))));
+			case "button":
+				return new ButtonOption(name, v -> set(name, null));
+			case "string":
+				return new StringOption(name, v -> set(name, v==null || v.isEmpty() ? EMPTY : v), def==null || EMPTY.equals(def) ? "" : def);
+			default:
+				return null;
+			}
+		} catch (RuntimeException e) {
+			// Malformed option declaration, ignore it
+			return null;
+		}
+	}
+	
+	private static int toInt(String value) {
+		final long result = Long.parseLong(value);
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, result));
+	}
+	
+	/** Parses an option declaration.
+	 * @param line The <i>option</i> line sent by an engine
+	 * @return a map of keywords to values. Multiple <i>var</i> values are separated by \n.
+	 */
+	static Map<String, String> parse(String line) {
+		final Map<String, String> result = new HashMap<>();
+		final int typeIndex = line.indexOf(" type ");
+		if (!line.startsWith("option name ") || typeIndex<0) {
+			return result;
+		}
+		result.put("name", line.substring("option name ".length(), typeIndex).trim());
+		String keyword = null;
+		final StringBuilder value = new StringBuilder();
+		for (String token : line.substring(typeIndex+1).split(" +")) {
+			if (KEYWORDS.contains(token)) {
+				put(result, keyword, value.toString());
+				keyword = token;
+				value.setLength(0);
+			} else {
+				if (value.length()>0) {
+					value.append(' ');
+				}
+				value.append(token);
+			}
+		}
+		put(result, keyword, value.toString());
+		return result;
+	}
+	
+	private static void put(Map<String, String> result, String keyword, String value) {
+		if (keyword!=null) {
+			result.merge(keyword, value, (v1, v2) -> v1+"\n"+v2);
+		}
+	}
+	
+	/** Gets the default values of options.
+	 * @param options The <i>option</i> lines sent by an engine
+	 * @return A map of option names to their default values (buttons are excluded).
+	 */
+	static Map<String, String> getDefaultValues(List<String> options) {
+		final Map<String, String> result = new HashMap<>();
+		for (String option : options) {
+			final Map<String, String> fields = parse(option);
+			if (fields.containsKey("name") && fields.containsKey("default")) {
+				result.put(fields.get("name"), fields.get("default"));
+			}
+		}
+		return result;
+	}
+
+	private synchronized void set(String name, String value) {
+		if (buildingOptions) {
+			return;
+		}
+		if (value!=null) {
+			values.put(name, value);
+		}
+		if (process!=null) {
+			process.setOption(name, value);
+		}
+	}
+	
+	private synchronized UCIProcess getProcess() {
+		if (process==null) {
+			process = pool.acquire();
+			values.forEach(process::setOption);
+		}
+		return process;
+	}
+	
+	@Override
+	public void newGame() {
+		getProcess().send("ucinewgame");
+	}
+
+	@Override
+	public void setStartPosition(String fen) {
+		this.startFen = fen;
+		this.fen = fen;
+		this.moves.clear();
+	}
+
+	@Override
+	public void move(UCIMove move) {
+		this.fen = FenUpdater.play(fen, move.toString());
+		this.moves.add(move.toString());
+	}
+
+	@Override
+	public String getFEN() {
+		return fen;
+	}
+
+	@Override
+	public LongRunningTask<BestMoveReply> go(GoOptions params) {
+		final UCIProcess p = getProcess();
+		p.send(moves.isEmpty() ? "position fen "+startFen : "position fen "+startFen+" moves "+String.join(" ", moves));
+		final String goParams = params.toString();
+		p.send(goParams.isEmpty() ? "go" : "go "+goParams);
+		return new LongRunningTask<>() {
+			@Override
+			public BestMoveReply get() {
+				return waitBestMove(p);
+			}
+
+			@Override
+			public void stop() {
+				super.stop();
+				p.send("stop");
+			}
+		};
+	}
+	
+	private BestMoveReply waitBestMove(UCIProcess p) {
+		BestMoveReply last = null;
+		while (true) {
+			final String line = p.readLine(0);
+			final String[] tokens = line.split(" +");
+			if ("info".equals(tokens[0])) {
+				final BestMoveReply info = parseInfo(tokens);
+				if (info!=null) {
+					last = info;
+					if (infoListener!=null) {
+						infoListener.accept(info);
+					}
+				}
+			} else if ("bestmove".equals(tokens[0])) {
+				if (tokens.length<2 || "(none)".equals(tokens[1])) {
+					throw new IllegalStateException("Engine returned no move");
+				}
+				final UCIMove move = UCIMove.from(tokens[1]);
+				final UCIMove ponder = tokens.length>3 && "ponder".equals(tokens[2]) ? UCIMove.from(tokens[3]) : null;
+				return toReply(move, ponder, last);
+			}
+		}
+	}
+	
+	private static BestMoveReply toReply(UCIMove move, UCIMove ponder, BestMoveReply last) {
+		if (last==null) {
+			return new BestMoveReply(move, ponder);
+		}
+		final Integer score = last.getScore().isPresent() ? last.getScore().getAsInt() : null;
+		final List<UCIMove> pv = last.getPrincipalVariation();
+		if (pv.get(0).toString().equals(move.toString()) && (ponder==null || (pv.size()>1 && pv.get(1).toString().equals(ponder.toString())))) {
+			// The last reported principal variation is consistent with the best move
+			return new BestMoveReply(ponder==null ? pv.subList(0, 1) : pv, last.getNodes(), last.getDepth(), score);
+		}
+		return new BestMoveReply(move, ponder, last.getNodes(), last.getDepth(), score);
+	}
+
+	/** Parses an <i>info</i> line.
+	 * @param tokens The tokens of the line
+	 * @return The reply corresponding to the line, null if the line has no principal variation
+	 */
+	static BestMoveReply parseInfo(String[] tokens) {
+		int depth = 0;
+		long nodes = 0;
+		Integer score = null;
+		final List<UCIMove> pv = new ArrayList<>();
+		for (int i = 1; i < tokens.length-1; i++) {
+			if ("depth".equals(tokens[i])) {
+				depth = Integer.parseInt(tokens[++i]);
+			} else if ("nodes".equals(tokens[i])) {
+				nodes = Long.parseLong(tokens[++i]);
+			} else if ("score".equals(tokens[i]) && "cp".equals(tokens[i+1]) && i+2<tokens.length) {
+				score = Integer.parseInt(tokens[i+2]);
+				i += 2;
+			} else if ("pv".equals(tokens[i])) {
+				Arrays.stream(tokens).skip(i+1L).map(UCIMove::from).forEach(pv::add);
+				break;
+			} else if ("string".equals(tokens[i])) {
+				break;
+			}
+		}
+		return pv.isEmpty() ? null : new BestMoveReply(pv, nodes, depth, score);
+	}
+
+	@Override
+	public synchronized void release() {
+		if (process!=null) {
+			pool.release(process);
+			process = null;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.fathzer.jchess.uci.external;
+
+import java.util.List;
+
+import com.fathzer.jchess.uci.Engine;
+import com.fathzer.jchess.uci.EngineFactory;
+
+/** A factory of {@link ExternalEngine}s that share a pool of processes.
+ * <br>Example: <code>uci.add(new ExternalEngineFactory(Arrays.asList("/usr/games/stockfish"), 4));</code>
+ */
+public class ExternalEngineFactory implements EngineFactory, AutoCloseable {
+	private final ExternalEnginePool pool;
+
+	/** Constructor.
+	 * @param command The command that launches the engine (the executable path followed by its arguments)
+	 * @param maxIdle The maximum number of idle processes kept between two uses
+	 */
+	public ExternalEngineFactory(List<String> command, int maxIdle) {
+		this(new ExternalEnginePool(command, maxIdle));
+	}
+	
+	/** Constructor.
+	 * @param pool The pool of processes
+	 */
+	public ExternalEngineFactory(ExternalEnginePool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public String getId() {
+		return pool.getName();
+	}
+
+	@Override
+	public Engine get() {
+		return new ExternalEngine(pool);
+	}
+	
+	/** Gets the pool of processes.
+	 * @return an ExternalEnginePool
+	 */
+	public ExternalEnginePool getPool() {
+		return pool;
+	}
+
+	@Override
+	public void close() {
+		pool.close();
+	}
+}
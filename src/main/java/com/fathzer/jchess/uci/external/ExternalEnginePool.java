@@ -0,0 +1,141 @@
+package com.fathzer.jchess.uci.external;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/** A pool of warm processes of an external UCI engine.
+ * <br>Starting an engine process (and loading its networks, tablebases, etc...) is expensive. This pool keeps idle processes
+ * in order to reuse them across games and engines instances.
+ * <br>This class is thread safe.
+ * @see ExternalEngine
+ */
+public class ExternalEnginePool implements AutoCloseable {
+	private final List<String> command;
+	private final int maxIdle;
+	private final Deque<UCIProcess> idle = new ArrayDeque<>();
+	private long timeoutMs = 10000;
+	private String name;
+	private String author;
+	private List<String> options;
+	private boolean closed;
+	
+	/** Constructor.
+	 * @param command The command that launches the engine (the executable path followed by its arguments)
+	 * @param maxIdle The maximum number of idle processes kept by the pool
+	 */
+	public ExternalEnginePool(List<String> command, int maxIdle) {
+		this.command = new ArrayList<>(command);
+		this.maxIdle = maxIdle;
+	}
+	
+	/** Sets the maximum time to wait for the answers to <i>uci</i> and <i>isready</i> commands.
+	 * @param timeoutMs a number of milliseconds (default is 10s)
+	 */
+	public void setTimeoutMs(long timeoutMs) {
+		this.timeoutMs = timeoutMs;
+	}
+
+	/** Gets a process.
+	 * <br>An idle process is returned if available, otherwise a new process is started.
+	 * @return a process ready to receive commands
+	 * @throws IllegalStateException if the pool is closed or the process can't be started
+	 */
+	UCIProcess acquire() {
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("Pool is closed");
+			}
+			while (!idle.isEmpty()) {
+				final UCIProcess process = idle.pop();
+				if (process.isAlive()) {
+					return process;
+				}
+			}
+		}
+		final UCIProcess process = new UCIProcess(command, timeoutMs);
+		synchronized (this) {
+			if (name==null) {
+				name = process.getName()==null ? command.get(0) : process.getName();
+				author = process.getAuthor();
+				options = process.getOptions();
+			}
+		}
+		ExternalEngine.getDefaultValues(options).forEach(process::setDefaultValue);
+		return process;
+	}
+	
+	/** Returns a process to the pool.
+	 * <br>A new game is started in the process, then it is kept idle, unless there's already enough idle processes.
+	 * @param process The process
+	 */
+	void release(UCIProcess process) {
+		try {
+			process.send("ucinewgame");
+			process.isReady();
+		} catch (IllegalStateException e) {
+			process.close();
+			return;
+		}
+		synchronized (this) {
+			if (!closed && idle.size()<maxIdle) {
+				idle.push(process);
+				return;
+			}
+		}
+		process.close();
+	}
+	
+	private synchronized void init() {
+		if (name==null) {
+			release(acquire());
+		}
+	}
+	
+	/** Gets the name of the engine.
+	 * <br>If no process was started yet, a process is started to get it.
+	 * @return The name sent by the engine (the command if the engine sent no name)
+	 */
+	public String getName() {
+		init();
+		return name;
+	}
+
+	/** Gets the author of the engine.
+	 * @return The author sent by the engine, or null
+	 */
+	public String getAuthor() {
+		init();
+		return author;
+	}
+	
+	/** Gets the options declared by the engine.
+	 * @return The <i>option</i> lines sent by the engine
+	 */
+	List<String> getOptions() {
+		init();
+		return options;
+	}
+	
+	/** Gets the number of idle processes.
+	 * @return an int
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/** Closes all idle processes.
+	 * <br>Processes in use are closed when they are released.
+	 */
+	@Override
+	public void close() {
+		final List<UCIProcess> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+		}
+		toClose.forEach(UCIProcess::close);
+	}
+}
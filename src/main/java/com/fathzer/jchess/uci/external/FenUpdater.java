@@ -0,0 +1,167 @@
+package com.fathzer.jchess.uci.external;
+
+/** A utility that computes the FEN reached after a move.
+ * <br>External engines do not report their position, so the FEN is maintained here.
+ * Moves are supposed to be legal, they are not checked.
+ * Castling is recognized both in standard notation (the king moves two squares) and in Chess960 notation (the king captures its own rook).
+ */
+class FenUpdater {
+	private FenUpdater() {
+		super();
+	}
+
+	/** Plays a move.
+	 * @param fen The position before the move
+	 * @param move The move in UCI format
+	 * @return The position after the move
+	 * @throws IllegalArgumentException if the FEN or the move is invalid
+	 */
+	static String play(String fen, String move) {
+		final String[] fields = fen.trim().split(" +");
+		if (fields.length<4 || move.length()<4) {
+			throw new IllegalArgumentException("Invalid position or move");
+		}
+		final char[][] board = toBoard(fields[0]);
+		final boolean white = "w".equals(fields[1]);
+		final int fromFile = move.charAt(0)-'a';
+		final int fromRank = move.charAt(1)-'1';
+		final int toFile = move.charAt(2)-'a';
+		final int toRank = move.charAt(3)-'1';
+		final char piece = board[fromRank][fromFile];
+		final char captured = board[toRank][toFile];
+		if (piece==0) {
+			throw new IllegalArgumentException("No piece on "+move.substring(0, 2));
+		}
+		final String castling = updateCastling(fields[2], board, fromRank*8+fromFile, toRank*8+toFile);
+		String enPassant = "-";
+		final char kind = Character.toLowerCase(piece);
+		final boolean castle = kind=='k' && (Math.abs(toFile-fromFile)==2 || captured==(white ? 'R' : 'r'));
+		board[fromRank][fromFile] = 0;
+		if (castle) {
+			// The rook is the captured one (Chess960 notation) or the one on the side of the king's move
+			final boolean kingSide = toFile>fromFile;
+			int rookFile = toFile;
+			if (captured==0) {
+				rookFile = kingSide ? 7 : 0;
+				while (board[fromRank][rookFile]!=(white ? 'R' : 'r')) {
+					rookFile += kingSide ? -1 : 1;
+				}
+			}
+			board[fromRank][rookFile] = 0;
+			board[fromRank][kingSide ? 6 : 2] = piece;
+			board[fromRank][kingSide ? 5 : 3] = white ? 'R' : 'r';
+		} else {
+			if (kind=='p' && fromFile!=toFile && captured==0) {
+				// En passant capture
+				board[fromRank][toFile] = 0;
+			}
+			if (kind=='p' && Math.abs(toRank-fromRank)==2) {
+				enPassant = ""+(char)('a'+fromFile)+(char)('1'+(fromRank+toRank)/2);
+			}
+			final char promotion = move.length()>4 ? move.charAt(4) : 0;
+			board[toRank][toFile] = promotion==0 ? piece : (white ? Character.toUpperCase(promotion) : Character.toLowerCase(promotion));
+		}
+		final int halfMoves = kind=='p' || (captured!=0 && !castle) ? 0 : getInt(fields, 4, 0)+1;
+		final int fullMoves = getInt(fields, 5, 1) + (white ? 0 : 1);
+		return toPlacement(board)+" "+(white ? "b" : "w")+" "+castling+" "+enPassant+" "+halfMoves+" "+fullMoves;
+	}
+
+	/** Removes the castling rights lost by a move.
+	 * @param castling The castling rights before the move
+	 * @param board The board before the move
+	 * @param from The start square of the move (rank*8+file)
+	 * @param to The destination square of the move (rank*8+file)
+	 * @return The castling rights after the move
+	 */
+	private static String updateCastling(String castling, char[][] board, int from, int to) {
+		final StringBuilder result = new StringBuilder();
+		for (char right : castling.toCharArray()) {
+			final boolean white = Character.isUpperCase(right);
+			final int rank = white ? 0 : 7;
+			final int kingFile = getKingFile(board, rank, white ? 'K' : 'k');
+			final int rookFile = getRookFile(board, rank, white ? 'R' : 'r', Character.toLowerCase(right), kingFile);
+			final boolean lost = kingFile<0 || rookFile<0 || from==rank*8+kingFile || from==rank*8+rookFile || to==rank*8+rookFile;
+			if (right!='-' && !lost) {
+				result.append(right);
+			}
+		}
+		return result.length()==0 ? "-" : result.toString();
+	}
+	
+	private static int getKingFile(char[][] board, int rank, char king) {
+		for (int file = 0; file < 8; file++) {
+			if (board[rank][file]==king) {
+				return file;
+			}
+		}
+		return -1;
+	}
+	
+	private static int getRookFile(char[][] board, int rank, char rook, char right, int kingFile) {
+		if (right=='k' || right=='q') {
+			// Standard or X-FEN notation: the outermost rook on the side of the king
+			final boolean kingSide = right=='k';
+			for (int file = kingSide ? 7 : 0; file!=kingFile && kingFile>=0; file += kingSide ? -1 : 1) {
+				if (board[rank][file]==rook) {
+					return file;
+				}
+			}
+			return -1;
+		}
+		// Shredder-FEN notation: the file of the rook
+		final int file = right-'a';
+		return file>=0 && file<8 && board[rank][file]==rook ? file : -1;
+	}
+
+	private static int getInt(String[] fields, int index, int defaultValue) {
+		try {
+			return fields.length>index ? Integer.parseInt(fields[index]) : defaultValue;
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static char[][] toBoard(String placement) {
+		final char[][] board = new char[8][8];
+		final String[] ranks = placement.split("/");
+		if (ranks.length!=8) {
+			throw new IllegalArgumentException("Invalid piece placement "+placement);
+		}
+		for (int i = 0; i < 8; i++) {
+			int file = 0;
+			for (char c : ranks[i].toCharArray()) {
+				if (Character.isDigit(c)) {
+					file += c-'0';
+				} else {
+					board[7-i][file++] = c;
+				}
+			}
+		}
+		return board;
+	}
+
+	private static String toPlacement(char[][] board) {
+		final StringBuilder result = new StringBuilder();
+		for (int rank = 7; rank >= 0; rank--) {
+			int empty = 0;
+			for (int file = 0; file < 8; file++) {
+				if (board[rank][file]==0) {
+					empty++;
+				} else {
+					if (empty>0) {
+						result.append(empty);
+						empty = 0;
+					}
+					result.append(board[rank][file]);
+				}
+			}
+			if (empty>0) {
+				result.append(empty);
+			}
+			if (rank>0) {
+				result.append('/');
+			}
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,186 @@
+package com.fathzer.jchess.uci.external;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.fathzer.jchess.uci.ThreadFactories;
+
+/** A running UCI engine process.
+ * <br>Lines sent by the process are read by a dedicated thread and queued until they are consumed.
+ */
+class UCIProcess implements AutoCloseable {
+	private static final String EOF = new String("EOF");
+	
+	private final Process process;
+	private final BufferedWriter input;
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+	private final long timeoutMs;
+	private final Map<String, String> optionValues = new HashMap<>();
+	private String name;
+	private String author;
+	private final List<String> options = new ArrayList<>();
+	
+	/** Starts a process and performs the <i>uci</i> handshake.
+	 * @param command The command that launches the process
+	 * @param timeoutMs The maximum time to wait for the replies to <i>uci</i> and <i>isready</i>
+	 * @throws UncheckedIOException if the process can't be started
+	 * @throws IllegalStateException if the process does not answer the handshake
+	 */
+	UCIProcess(List<String> command, long timeoutMs) {
+		this.timeoutMs = timeoutMs;
+		try {
+			this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+		ThreadFactories.get("uci-process-reader").newThread(this::read).start();
+		try {
+			send("uci");
+			for (String line = readLine(timeoutMs); !"uciok".equals(line); line = readLine(timeoutMs)) {
+				if (line==null) {
+					throw new IllegalStateException("Process did not answer uci command");
+				}
+				if (line.startsWith("id name ")) {
+					name = line.substring("id name ".length()).trim();
+				} else if (line.startsWith("id author ")) {
+					author = line.substring("id author ".length()).trim();
+				} else if (line.startsWith("option ")) {
+					options.add(line);
+				}
+			}
+			isReady();
+		} catch (RuntimeException e) {
+			process.destroyForcibly();
+			throw e;
+		}
+	}
+	
+	private void read() {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line!=null; line = reader.readLine()) {
+				lines.add(line.trim());
+			}
+		} catch (IOException e) {
+			// The process is dead
+		} finally {
+			lines.add(EOF);
+		}
+	}
+	
+	/** Sends a line to the process.
+	 * @param line The line to send
+	 * @throws IllegalStateException if the line can't be sent
+	 */
+	synchronized void send(String line) {
+		try {
+			input.write(line);
+			input.newLine();
+			input.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to send "+line, e);
+		}
+	}
+	
+	/** Reads the next line sent by the process.
+	 * @param timeoutMs The maximum time to wait for a line, 0 to wait without limit
+	 * @return The line or null if timeout expired
+	 * @throws IllegalStateException if the process is dead
+	 */
+	String readLine(long timeoutMs) {
+		try {
+			final String line = timeoutMs>0 ? lines.poll(timeoutMs, TimeUnit.MILLISECONDS) : lines.take();
+			if (line==EOF) {
+				lines.add(EOF);
+				throw new IllegalStateException("Process is dead");
+			}
+			return line;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/** Sends <i>isready</i> and waits for <i>readyok</i>.
+	 * @throws IllegalStateException if the process does not answer
+	 */
+	void isReady() {
+		send("isready");
+		for (String line = readLine(timeoutMs); !"readyok".equals(line); line = readLine(timeoutMs)) {
+			if (line==null) {
+				throw new IllegalStateException("Process did not answer isready command");
+			}
+		}
+	}
+	
+	/** Sets an option of the process, if its value is not already the requested one.
+	 * @param name The option's name
+	 * @param value The option's value, null for a button
+	 */
+	void setOption(String name, String value) {
+		if (value==null) {
+			send("setoption name "+name);
+		} else if (!Objects.equals(value, optionValues.get(name))) {
+			send("setoption name "+name+" value "+value);
+			optionValues.put(name, value);
+		}
+	}
+	
+	/** Sets the current value of an option without sending it to the process.
+	 * @param name The option's name
+	 * @param value The option's value
+	 */
+	void setDefaultValue(String name, String value) {
+		optionValues.putIfAbsent(name, value);
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getAuthor() {
+		return author;
+	}
+
+	/** Gets the option declarations sent during the handshake.
+	 * @return The <i>option</i> lines
+	 */
+	List<String> getOptions() {
+		return Collections.unmodifiableList(options);
+	}
+	
+	boolean isAlive() {
+		return process.isAlive();
+	}
+
+	@Override
+	public void close() {
+		if (process.isAlive()) {
+			try {
+				send("quit");
+				if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (IllegalStateException e) {
+				process.destroyForcibly();
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.fathzer.jchess.uci.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An event emitted for every command received by the UCI layer.
+ * <br>It starts when the command is received and ends when its execution (not the background task it may have started) is completed.
+ */
+@Name("com.fathzer.jchess.uci.Command")
+@Label("UCI Command")
+@Category({"JChess", "UCI"})
+@Description("A command received from the UCI client and its dispatch")
+public final class CommandEvent extends Event {
+	@Label("Command")
+	@Description("The command name (the first token of the command line)")
+	public String command;
+
+	@Label("Line")
+	@Description("The whole command line")
+	public String line;
+
+	@Label("Known")
+	@Description("true if the command is known by the UCI layer")
+	public boolean known;
+}
@@ -0,0 +1,22 @@
+package com.fathzer.jchess.uci.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An event emitted when an option's trigger is executed.
+ * <br>Its duration is the time spent in the trigger (for instance to reallocate a hash table).
+ */
+@Name("com.fathzer.jchess.uci.Option")
+@Label("UCI Option trigger")
+@Category({"JChess", "UCI"})
+@Description("Execution of an option's trigger")
+public final class OptionEvent extends Event {
+	@Label("Name")
+	public String name;
+
+	@Label("Value")
+	public String value;
+}
@@ -0,0 +1,35 @@
+package com.fathzer.jchess.uci.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An event emitted for every <i>perft</i> or <i>test</i> run.
+ */
+@Name("com.fathzer.jchess.uci.Perft")
+@Label("UCI Perft")
+@Category({"JChess", "UCI"})
+@Description("A perft or move generator test run")
+public final class PerftEvent extends Event {
+	@Label("Kind")
+	@Description("perft or test")
+	public String kind;
+
+	@Label("Depth")
+	public int depth;
+
+	@Label("Threads")
+	public int parallelism;
+
+	@Label("Leaves")
+	@Description("The number of leaves (or moves for the test command) found")
+	public long leaves;
+
+	@Label("Leaves per second")
+	public long leavesPerSecond;
+
+	@Label("Interrupted")
+	public boolean interrupted;
+}
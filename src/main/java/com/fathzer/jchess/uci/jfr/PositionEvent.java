@@ -0,0 +1,23 @@
+package com.fathzer.jchess.uci.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An event emitted when a position is set up in the engine (start position and moves).
+ */
+@Name("com.fathzer.jchess.uci.Position")
+@Label("UCI Position")
+@Category({"JChess", "UCI"})
+@Description("Position set up in the engine")
+public final class PositionEvent extends Event {
+	@Label("Start position")
+	@Description("The start position in FEN format")
+	public String fen;
+
+	@Label("Move count")
+	@Description("The number of moves played from the start position")
+	public int moveCount;
+}
@@ -0,0 +1,35 @@
+package com.fathzer.jchess.uci.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An event emitted for every search, from the <i>go</i> command to the <i>bestmove</i> reply.
+ */
+@Name("com.fathzer.jchess.uci.Search")
+@Label("UCI Search")
+@Category({"JChess", "UCI"})
+@Description("A search from go command to bestmove reply")
+public final class SearchEvent extends Event {
+	@Label("Engine")
+	public String engine;
+
+	@Label("Position")
+	@Description("The searched position in FEN format")
+	public String fen;
+
+	@Label("Go options")
+	public String options;
+
+	@Label("Best move")
+	public String bestMove;
+
+	@Label("Ponder move")
+	public String ponderMove;
+
+	@Label("Stopped")
+	@Description("true if the search was ended by a stop command")
+	public boolean stopped;
+}
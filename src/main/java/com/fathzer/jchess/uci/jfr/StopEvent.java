@@ -0,0 +1,19 @@
+package com.fathzer.jchess.uci.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** An event emitted when a search is stopped, from the <i>stop</i> command to the <i>bestmove</i> reply.
+ * <br>Its duration is the reactivity of the engine to the stop request.
+ */
+@Name("com.fathzer.jchess.uci.Stop")
+@Label("UCI Stop")
+@Category({"JChess", "UCI"})
+@Description("Latency between a stop request and the bestmove reply")
+public final class StopEvent extends Event {
+	@Label("Engine")
+	public String engine;
+}
@@ -0,0 +1,5 @@
+/** <a href="https://docs.oracle.com/en/java/javase/11/docs/api/jdk.jfr/jdk/jfr/package-summary.html">Java Flight Recorder</a> events emitted by the UCI layer.
+ * <br>These events are disabled unless a recording is running, so they can safely stay in production code.
+ * <br>All of them belong to the <i>JChess/UCI</i> category.
+ */
+package com.fathzer.jchess.uci.jfr;
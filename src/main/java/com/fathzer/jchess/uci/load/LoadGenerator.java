@@ -0,0 +1,349 @@
+package com.fathzer.jchess.uci.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.ServiceLoader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.fathzer.jchess.uci.Engine;
+import com.fathzer.jchess.uci.EngineFactory;
+import com.fathzer.jchess.uci.ThreadFactories;
+import com.fathzer.jchess.uci.UCI;
+import com.fathzer.jchess.uci.metrics.LatencyHistogram;
+import com.fathzer.jchess.uci.metrics.UCIMetrics;
+
+/** A generator of synthetic load on the UCI layer.
+ * <br>It runs many {@link UCI} instances in the current JVM, each one driven by a scripted client through the {@link UCI#getNextCommand()} and
+ * {@link UCI#out(CharSequence)} override points. Each client plays games against itself: <i>ucinewgame</i>, <i>isready</i>, then,
+ * for each move, a <i>position startpos moves ...</i> command growing with the best moves returned and a <i>go</i> command with the clocks of both players.
+ * Some searches are randomly interrupted by a <i>stop</i> command.
+ * <br>The report contains the throughput, the latency percentiles between <i>go</i> and <i>bestmove</i>, and the time forfeits
+ * (searches that lasted longer than the player's remaining time).
+ */
+public class LoadGenerator {
+	private static final String BEST_MOVE = "bestmove";
+	private static final String READY_OK = "readyok";
+	private static final String STOP = "stop";
+
+	/** The result of a load test.
+	 */
+	public static class Report {
+		private final int clients;
+		private final long searches;
+		private final long forfeits;
+		private final long nanos;
+		private final LatencyHistogram latencies;
+		
+		private Report(int clients, long searches, long forfeits, long nanos, LatencyHistogram latencies) {
+			this.clients = clients;
+			this.searches = searches;
+			this.forfeits = forfeits;
+			this.nanos = nanos;
+			this.latencies = latencies;
+		}
+
+		/** Gets the number of concurrent clients.
+		 * @return an int
+		 */
+		public int getClients() {
+			return clients;
+		}
+
+		/** Gets the number of searches completed.
+		 * @return a long
+		 */
+		public long getSearches() {
+			return searches;
+		}
+
+		/** Gets the number of searches that lasted longer than the remaining time of the player (or that never replied).
+		 * @return a long
+		 */
+		public long getForfeits() {
+			return forfeits;
+		}
+
+		/** Gets the test duration.
+		 * @return a number of nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/** Gets the latencies between <i>go</i> commands and <i>bestmove</i> replies.
+		 * @return a histogram
+		 */
+		public LatencyHistogram getLatencies() {
+			return latencies;
+		}
+		
+		/** Gets the throughput.
+		 * @return The number of searches per second
+		 */
+		public double getThroughput() {
+			return nanos==0 ? 0.0 : searches*1_000_000_000.0/nanos;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "load clients=%d searches=%d throughput=%.1f/s forfeits=%d ", clients, searches, getThroughput(), forfeits)+
+					UCIMetrics.toString("go", latencies);
+		}
+	}
+	
+	private final Supplier<Engine> engineSupplier;
+	private int gamesPerClient = 1;
+	private int movesPerGame = 40;
+	private long clockMs = 60000;
+	private long incrementMs = 1000;
+	private double stopProbability = 0.05;
+	private long seed = 0;
+
+	/** Constructor.
+	 * @param engineSupplier A supplier of engines, a new engine is requested for each client.
+	 */
+	public LoadGenerator(Supplier<Engine> engineSupplier) {
+		this.engineSupplier = engineSupplier;
+	}
+	
+	/** Sets the number of games played by each client.
+	 * @param gamesPerClient a strictly positive int (default is 1)
+	 */
+	public void setGamesPerClient(int gamesPerClient) {
+		this.gamesPerClient = gamesPerClient;
+	}
+
+	/** Sets the maximum number of moves of each game.
+	 * <br>A game can be shorter if the engine returns no move.
+	 * @param movesPerGame a strictly positive int (default is 40)
+	 */
+	public void setMovesPerGame(int movesPerGame) {
+		this.movesPerGame = movesPerGame;
+	}
+
+	/** Sets the clock of the games.
+	 * @param clockMs The initial time of each player in milliseconds (default is 60s)
+	 * @param incrementMs The increment per move in milliseconds (default is 1s)
+	 */
+	public void setClock(long clockMs, long incrementMs) {
+		this.clockMs = clockMs;
+		this.incrementMs = incrementMs;
+	}
+
+	/** Sets the probability a search is interrupted by a <i>stop</i> command.
+	 * @param stopProbability a number between 0 and 1 (default is 0.05)
+	 */
+	public void setStopProbability(double stopProbability) {
+		this.stopProbability = stopProbability;
+	}
+
+	/** Sets the seed of the random generator that decides when searches are stopped.
+	 * @param seed The seed (default is 0)
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/** Runs a load test.
+	 * @param clients The number of concurrent clients
+	 * @return The test report
+	 * @throws InterruptedException if the current thread is interrupted while waiting for the clients
+	 */
+	public Report run(int clients) throws InterruptedException {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final AtomicLong forfeits = new AtomicLong();
+		final List<Thread> threads = new ArrayList<>(clients);
+		final long start = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			final Client client = new Client(engineSupplier.get(), new Random(seed+i), latencies, forfeits);
+			threads.add(ThreadFactories.start("load-client-"+i, client));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return new Report(clients, latencies.getCount(), forfeits.get(), System.nanoTime()-start, latencies);
+	}
+	
+	/** Runs load tests with 1, 2, 4, ... clients.
+	 * @param maxClients The maximum number of clients
+	 * @return The reports of all the tests
+	 * @throws InterruptedException if the current thread is interrupted while waiting for the clients
+	 */
+	public List<Report> sweep(int maxClients) throws InterruptedException {
+		final List<Report> result = new ArrayList<>();
+		for (int clients = 1; clients < maxClients; clients = clients*2) {
+			result.add(run(clients));
+		}
+		result.add(run(maxClients));
+		return result;
+	}
+
+	/** Runs a load test sweep and prints the reports.
+	 * <br>The engine is the first {@link EngineFactory} available through the {@link ServiceLoader} mechanism.
+	 * @param args The maximum number of clients, then, optionally, the number of games per client, the number of moves per game and the clock in milliseconds.
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	@SuppressWarnings("java:S106")
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length==0) {
+			throw new IllegalArgumentException("Usage: LoadGenerator maxClients [gamesPerClient [movesPerGame [clockMs]]]");
+		}
+		final EngineFactory factory = ServiceLoader.load(EngineFactory.class).findFirst().orElseThrow(() -> new IllegalArgumentException("No engine factory found"));
+		final LoadGenerator generator = new LoadGenerator(factory);
+		if (args.length>1) {
+			generator.setGamesPerClient(Integer.parseInt(args[1]));
+		}
+		if (args.length>2) {
+			generator.setMovesPerGame(Integer.parseInt(args[2]));
+		}
+		if (args.length>3) {
+			generator.setClock(Long.parseLong(args[3]), generator.incrementMs);
+		}
+		generator.sweep(Integer.parseInt(args[0])).forEach(System.out::println);
+	}
+
+	/** A UCI instance driven by a script.
+	 * <br>The script is executed by the UCI thread in {@link #getNextCommand()}, which waits for the replies it needs.
+	 */
+	private class Client extends UCI {
+		private final Random random;
+		private final LatencyHistogram latencies;
+		private final AtomicLong forfeits;
+		private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+		private final StringBuilder moves = new StringBuilder();
+		private final long[] clocks = new long[2];
+		private int game;
+		private int ply;
+		/** The next command to send, null to compute it. */
+		private String next;
+		private long goStart;
+		private boolean waitingBestMove;
+		private boolean waitingReady;
+		
+		private Client(Engine engine, Random random, LatencyHistogram latencies, AtomicLong forfeits) {
+			super(engine);
+			this.random = random;
+			this.latencies = latencies;
+			this.forfeits = forfeits;
+			this.next = "ucinewgame";
+		}
+		
+		@Override
+		protected String getNextCommand() {
+			if (STOP.equals(next)) {
+				// Stop the search after a random delay
+				sleep(random.nextInt(10));
+				next = null;
+				return STOP;
+			}
+			if (waitingReady) {
+				waitingReady = false;
+				waitReply(READY_OK, clockMs);
+			}
+			if (waitingBestMove) {
+				waitBestMove();
+			}
+			if (next!=null) {
+				final String result = next;
+				next = afterCommand(result);
+				return result;
+			}
+			if (ply>=movesPerGame) {
+				game++;
+				if (game>=gamesPerClient) {
+					return "quit";
+				}
+				next = afterCommand("ucinewgame");
+				return "ucinewgame";
+			}
+			final String position = "position startpos"+(moves.length()==0 ? "" : " moves"+moves);
+			next = go();
+			return position;
+		}
+		
+		private String afterCommand(String command) {
+			if ("ucinewgame".equals(command)) {
+				moves.setLength(0);
+				ply = 0;
+				clocks[0] = clockMs;
+				clocks[1] = clockMs;
+				return "isready";
+			} else if ("isready".equals(command)) {
+				waitingReady = true;
+			} else if (command.startsWith("go ")) {
+				goStart = System.nanoTime();
+				waitingBestMove = true;
+				if (random.nextDouble()<stopProbability) {
+					return STOP;
+				}
+			}
+			return null;
+		}
+		
+		private String go() {
+			return "go wtime "+clocks[0]+" btime "+clocks[1]+" winc "+incrementMs+" binc "+incrementMs;
+		}
+		
+		private void waitBestMove() {
+			waitingBestMove = false;
+			final int player = ply%2;
+			final String reply = waitReply(BEST_MOVE, clocks[player]+5000);
+			final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-goStart);
+			if (reply==null || elapsedMs>clocks[player]) {
+				forfeits.incrementAndGet();
+				// Game is lost
+				ply = movesPerGame;
+				if (reply==null) {
+					return;
+				}
+			} else {
+				clocks[player] += incrementMs - elapsedMs;
+				ply++;
+			}
+			latencies.record(System.nanoTime()-goStart);
+			final String[] tokens = reply.split(" ");
+			if (tokens.length<2 || "0000".equals(tokens[1]) || "(none)".equals(tokens[1])) {
+				// No legal move
+				ply = movesPerGame;
+			} else {
+				moves.append(' ').append(tokens[1]);
+			}
+		}
+		
+		private String waitReply(String prefix, long timeoutMs) {
+			final long end = System.currentTimeMillis()+timeoutMs;
+			try {
+				for (long remaining = timeoutMs; remaining>0; remaining = end-System.currentTimeMillis()) {
+					final String reply = replies.poll(remaining, TimeUnit.MILLISECONDS);
+					if (reply==null) {
+						return null;
+					} else if (reply.startsWith(prefix)) {
+						return reply;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}
+		
+		private void sleep(long ms) {
+			try {
+				Thread.sleep(ms);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		protected void out(CharSequence message) {
+			replies.add(message.toString());
+		}
+	}
+}
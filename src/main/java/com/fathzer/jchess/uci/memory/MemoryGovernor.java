@@ -0,0 +1,204 @@
+package com.fathzer.jchess.uci.memory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import com.fathzer.jchess.uci.ThreadFactories;
+
+/** A governor that shrinks {@link Shrinkable} objects when the heap is under pressure and lets them grow back when the pressure drops.
+ * <br>The pressure is the highest ratio between the memory used after the last garbage collection and the maximum size of the heap memory pools.
+ * Memory used after a collection is a better indicator than the current usage, which contains garbage.
+ * <br>The pressure is checked periodically and as soon as the JVM notifies that a collection usage threshold is exceeded.
+ * As the memory used after a collection only changes when a collection occurs, the governor reacts only if a collection occurred since the previous check.
+ * This gives time to the garbage collector to show the effect of a shrink before shrinking again.
+ * <br>The collection usage thresholds of the heap memory pools are shared by the whole JVM. They are set to the lowest high threshold of the open governors,
+ * and they are disabled when the last governor is closed.
+ * When it exceeds the high threshold, the size ratio of registered objects is halved (it never goes below 1/16).
+ * When it goes below the low threshold, the ratio is doubled until it reaches 1. Between the two thresholds, nothing changes.
+ * <br>A governor can be shared by many UCI instances.
+ */
+public class MemoryGovernor implements AutoCloseable {
+	/** The minimum size ratio. */
+	public static final double MIN_RATIO = 1.0/16;
+	/** The governors that set the collection usage thresholds */
+	private static final List<MemoryGovernor> THRESHOLD_OWNERS = new ArrayList<>();
+	
+	private final List<Shrinkable> shrinkables = new CopyOnWriteArrayList<>();
+	private final double highThreshold;
+	private final double lowThreshold;
+	private final DoubleSupplier pressure;
+	private final LongSupplier collections;
+	private long lastCollections = -1;
+	private ScheduledExecutorService timer;
+	private NotificationListener listener;
+	private double ratio = 1.0;
+
+	/** Constructor.
+	 * <br>The low threshold is 15% below the high one and the pressure is checked every second.
+	 * @param highThreshold The pressure (a number in ]0,1[) above which registered objects are shrunk.
+	 * @throws IllegalArgumentException if threshold is not in ]0,1[
+	 */
+	public MemoryGovernor(double highThreshold) {
+		this(highThreshold, Math.max(0.0, highThreshold-0.15), 1000);
+	}
+	
+	/** Constructor.
+	 * @param highThreshold The pressure (a number in ]0,1[) above which registered objects are shrunk.
+	 * @param lowThreshold The pressure below which registered objects are allowed to grow.
+	 * @param periodMs The number of milliseconds between two checks of the pressure.
+	 * @throws IllegalArgumentException if thresholds are not in ]0,1[, if low threshold is greater than the high one or if periodMs is not strictly positive.
+	 */
+	public MemoryGovernor(double highThreshold, double lowThreshold, long periodMs) {
+		this(highThreshold, lowThreshold, MemoryGovernor::getHeapPressure, MemoryGovernor::getCollectionCount);
+		if (periodMs<=0) {
+			throw new IllegalArgumentException("Period should be strictly positive");
+		}
+		synchronized (THRESHOLD_OWNERS) {
+			THRESHOLD_OWNERS.add(this);
+			updateThresholds();
+		}
+		this.listener = this::handleNotification;
+		((NotificationEmitter)ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+		this.timer = Executors.newSingleThreadScheduledExecutor(ThreadFactories.get("uci-memory"));
+		timer.scheduleWithFixedDelay(this::check, periodMs, periodMs, TimeUnit.MILLISECONDS);
+	}
+	
+	MemoryGovernor(double highThreshold, double lowThreshold, DoubleSupplier pressure, LongSupplier collections) {
+		if (highThreshold<=0 || highThreshold>=1 || lowThreshold<0 || lowThreshold>highThreshold) {
+			throw new IllegalArgumentException("Invalid thresholds");
+		}
+		this.highThreshold = highThreshold;
+		this.lowThreshold = lowThreshold;
+		this.pressure = pressure;
+		this.collections = collections;
+	}
+	
+	/** Sets the collection usage thresholds to the lowest high threshold of the governors, or disables them if there's no governor.
+	 * <br>This method should be called while holding the lock on {@link #THRESHOLD_OWNERS}.
+	 */
+	private static void updateThresholds() {
+		final double threshold = THRESHOLD_OWNERS.stream().mapToDouble(g -> g.highThreshold).min().orElse(0.0);
+		getHeapPools().forEach(p -> p.setCollectionUsageThreshold((long)(p.getUsage().getMax()*threshold)));
+	}
+
+	private static List<MemoryPoolMXBean> getHeapPools() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(p -> p.getType()==MemoryType.HEAP && p.isCollectionUsageThresholdSupported() && p.getUsage().getMax()>0)
+				.collect(Collectors.toList());
+	}
+	
+	/** Gets the current heap pressure.
+	 * @return The highest ratio between the memory used after the last collection and the maximum size of heap memory pools.
+	 */
+	public static double getHeapPressure() {
+		double result = 0.0;
+		for (MemoryPoolMXBean pool : getHeapPools()) {
+			final MemoryUsage usage = pool.getCollectionUsage();
+			if (usage!=null && usage.getMax()>0) {
+				result = Math.max(result, (double)usage.getUsed()/usage.getMax());
+			}
+		}
+		return result;
+	}
+	
+	/** Gets the number of garbage collections since the JVM started.
+	 * @return a long
+	 */
+	static long getCollectionCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c>0).sum();
+	}
+	
+	private void handleNotification(Notification notification, Object handback) {
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+			// Shrink immediately, without waiting for the next periodic check
+			timer.execute(this::check);
+		}
+	}
+
+	/** Registers an object.
+	 * <br>If the heap is currently under pressure, the object's size ratio is immediately set.
+	 * @param shrinkable The object to register
+	 */
+	public synchronized void register(Shrinkable shrinkable) {
+		shrinkables.add(shrinkable);
+		if (ratio<1.0) {
+			shrinkable.setSizeRatio(ratio);
+		}
+	}
+	
+	/** Unregisters an object.
+	 * <br>The object's size ratio is restored to 1.
+	 * @param shrinkable The object to unregister
+	 */
+	public synchronized void unregister(Shrinkable shrinkable) {
+		if (shrinkables.remove(shrinkable) && ratio<1.0) {
+			shrinkable.setSizeRatio(1.0);
+		}
+	}
+	
+	/** Gets the current size ratio.
+	 * @return a number in [{@link #MIN_RATIO},1]
+	 */
+	public synchronized double getSizeRatio() {
+		return ratio;
+	}
+	
+	/** Checks the pressure and updates the size ratio of registered objects if needed.
+	 * <br>Nothing is done if no collection occurred since the previous check.
+	 */
+	synchronized void check() {
+		final long count = collections.getAsLong();
+		if (count==lastCollections) {
+			return;
+		}
+		lastCollections = count;
+		final double current = pressure.getAsDouble();
+		final double newRatio;
+		if (current>=highThreshold) {
+			newRatio = Math.max(MIN_RATIO, ratio/2);
+		} else if (current<lowThreshold) {
+			newRatio = Math.min(1.0, ratio*2);
+		} else {
+			newRatio = ratio;
+		}
+		if (newRatio!=ratio) {
+			ratio = newRatio;
+			shrinkables.forEach(s -> s.setSizeRatio(newRatio));
+		}
+	}
+
+	@Override
+	public void close() {
+		if (timer!=null) {
+			timer.shutdownNow();
+			synchronized (THRESHOLD_OWNERS) {
+				if (THRESHOLD_OWNERS.remove(this)) {
+					updateThresholds();
+				}
+			}
+			try {
+				((NotificationEmitter)ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+			} catch (ListenerNotFoundException e) {
+				// Already removed
+			}
+		}
+	}
+}
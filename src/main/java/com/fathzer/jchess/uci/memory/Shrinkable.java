@@ -0,0 +1,14 @@
+package com.fathzer.jchess.uci.memory;
+
+/** An object whose memory footprint can be reduced when the heap is under pressure (a cache, a hash table, an opening book, etc...).
+ * <br>Engines that implement this interface are automatically registered in the {@link MemoryGovernor} of the UCI layer.
+ * @see MemoryGovernor
+ */
+public interface Shrinkable {
+	/** Sets the fraction of its nominal size this object is allowed to use.
+	 * <br>This method is called by the governor's thread when the heap pressure changes, so implementations should be thread safe.
+	 * It is not called again until the ratio changes.
+	 * @param ratio A number in ]0,1]. 1 means the nominal size (no memory pressure).
+	 */
+	void setSizeRatio(double ratio);
+}
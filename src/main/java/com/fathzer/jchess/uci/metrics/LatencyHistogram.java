@@ -0,0 +1,100 @@
+package com.fathzer.jchess.uci.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A lock-free latency histogram.
+ * <br>Latencies are recorded in nanoseconds in buckets whose upper bounds are powers of 2, from 2<sup>10</sup>ns (about 1&micro;s) to 2<sup>41</sup>ns (about 36 minutes).
+ * Greater latencies are recorded in the last bucket.
+ * <br>Recording a value is wait-free, reading the histogram while values are recorded may return a slightly inconsistent (but never corrupted) view.
+ */
+public class LatencyHistogram {
+	private static final int MIN_SHIFT = 10;
+	static final int BUCKETS = 32;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	/** Records a latency.
+	 * @param nanos The latency in nanoseconds. Negative values are considered as 0.
+	 */
+	public void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		counts.incrementAndGet(getBucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+	
+	static int getBucket(long nanos) {
+		final int log2 = nanos<=1 ? 0 : 64-Long.numberOfLeadingZeros(nanos-1);
+		return Math.min(BUCKETS-1, Math.max(0, log2-MIN_SHIFT));
+	}
+	
+	/** Gets the upper bound of a bucket.
+	 * @param bucket The bucket index
+	 * @return the bucket's upper bound in nanoseconds.
+	 */
+	static long getUpperBound(int bucket) {
+		return 1L<<(bucket+MIN_SHIFT);
+	}
+	
+	/** Gets the number of recorded latencies.
+	 * @return a positive or null long
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/** Gets the sum of recorded latencies.
+	 * @return a number of nanoseconds
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/** Gets the maximum recorded latency.
+	 * @return a number of nanoseconds, 0 if no latency was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/** Gets an estimation of a percentile.
+	 * @param percentile The percentile (for example 0.99 for the 99th percentile).
+	 * @return The upper bound (in nanoseconds) of the bucket that contains the percentile, bounded by {@link #getMax()}. 0 if no latency was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		final long[] snapshot = getCounts();
+		final long total = Math.max(1, Math.round(percentile*getTotal(snapshot)));
+		long cumulated = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			cumulated += snapshot[i];
+			if (cumulated>=total) {
+				return Math.min(getUpperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+	
+	/** Gets the number of latencies recorded in each bucket.
+	 * @return an array of {@value #BUCKETS} counts.
+	 */
+	long[] getCounts() {
+		final long[] result = new long[BUCKETS];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = counts.get(i);
+		}
+		return result;
+	}
+	
+	private static long getTotal(long[] counts) {
+		long result = 0;
+		for (long c : counts) {
+			result += c;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,67 @@
+package com.fathzer.jchess.uci.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** An embedded HTTP server that exposes {@link UCIMetrics} in Prometheus text format on the loopback interface.
+ * <br>The metrics are available at the <i>/metrics</i> path.
+ */
+public class MetricsServer implements AutoCloseable {
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	private final HttpServer server;
+	private final UCIMetrics metrics;
+	
+	/** Constructor.
+	 * <br>The server is started by the constructor.
+	 * @param metrics The metrics to expose
+	 * @param port The port the server listens to on localhost (0 to use an ephemeral port).
+	 * @throws UncheckedIOException if the server can't be started
+	 */
+	public MetricsServer(UCIMetrics metrics, int port) {
+		this.metrics = metrics;
+		try {
+			this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		server.createContext("/metrics", this::handle);
+		server.start();
+	}
+	
+	/** Gets the port the server listens to.
+	 * @return an int
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			final byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
@@ -0,0 +1,157 @@
+package com.fathzer.jchess.uci.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/** The CPU time and the memory allocated by commands and background tasks.
+ * <br>Measures are taken with the {@link ThreadMXBean} counters of the thread that executes the command or the task.
+ * Please note that the work done by other threads (for instance the helper threads of a multi-threaded search) is not counted.
+ * <br>If the JVM does not support thread CPU time or allocation counters, the corresponding values are -1.
+ * This is also the case for measures taken on virtual threads (Java 21+). The background tasks of a UCI session are measured on a platform thread,
+ * but the commands of a session that runs on a virtual thread are not measured.
+ * <br>All the methods of this class are thread safe.
+ */
+public class ResourceUsage {
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+	private static final boolean ALLOCATION_SUPPORTED = THREADS instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)THREADS).isThreadAllocatedMemorySupported();
+
+	/** The counters of a thread at the beginning of a measure.
+	 */
+	public static final class Sample {
+		private final long cpuNanos;
+		private final long allocatedBytes;
+
+		private Sample(long cpuNanos, long allocatedBytes) {
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+	}
+
+	/** The resources used by a command or a task.
+	 */
+	public static final class Measure {
+		private final long cpuNanos;
+		private final long allocatedBytes;
+
+		private Measure(long cpuNanos, long allocatedBytes) {
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		/** Gets the CPU time.
+		 * @return a number of nanoseconds, -1 if unknown
+		 */
+		public long getCpuNanos() {
+			return cpuNanos;
+		}
+
+		/** Gets the allocated memory.
+		 * @return a number of bytes, -1 if unknown
+		 */
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "cpu=%.3fms allocated=%d bytes", cpuNanos/1_000_000.0, allocatedBytes);
+		}
+	}
+
+	private static final class Totals {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder allocatedBytes = new LongAdder();
+	}
+
+	private final Map<String, Totals> totals = new ConcurrentHashMap<>();
+	private volatile BiConsumer<String, Measure> listener;
+
+	/** Constructor.
+	 * <br>It enables the thread CPU time and allocation counters of the JVM if they are supported.
+	 */
+	public ResourceUsage() {
+		if (CPU_SUPPORTED && !THREADS.isThreadCpuTimeEnabled()) {
+			THREADS.setThreadCpuTimeEnabled(true);
+		}
+		if (ALLOCATION_SUPPORTED && !((com.sun.management.ThreadMXBean)THREADS).isThreadAllocatedMemoryEnabled()) {
+			((com.sun.management.ThreadMXBean)THREADS).setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+
+	/** Sets a listener of the measures.
+	 * @param listener A listener called with the name and the measure each time a measure is recorded (null to remove the listener)
+	 */
+	public void setListener(BiConsumer<String, Measure> listener) {
+		this.listener = listener;
+	}
+
+	/** Starts a measure on the current thread.
+	 * @return The counters of the current thread
+	 */
+	public Sample start() {
+		return new Sample(getCpuNanos(), getAllocatedBytes());
+	}
+
+	/** Ends a measure started on the current thread and records it.
+	 * @param name The name of the command or task
+	 * @param sample The sample returned by {@link #start()}
+	 * @return The measure
+	 */
+	public Measure record(String name, Sample sample) {
+		final Measure measure = new Measure(delta(sample.cpuNanos, getCpuNanos()), delta(sample.allocatedBytes, getAllocatedBytes()));
+		final Totals entry = totals.computeIfAbsent(name, k -> new Totals());
+		entry.count.increment();
+		entry.cpuNanos.add(Math.max(0, measure.cpuNanos));
+		entry.allocatedBytes.add(Math.max(0, measure.allocatedBytes));
+		final BiConsumer<String, Measure> current = listener;
+		if (current!=null) {
+			current.accept(name, measure);
+		}
+		return measure;
+	}
+
+	private static long delta(long start, long end) {
+		return start<0 || end<0 ? -1 : end-start;
+	}
+
+	private static long getCpuNanos() {
+		return CPU_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static long getAllocatedBytes() {
+		// getCurrentThreadAllocatedBytes requires Java 14+
+		return ALLOCATION_SUPPORTED ? ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+	}
+
+	/** Gets a human readable summary of the recorded measures.
+	 * @return A line per command or task name, sorted by name
+	 */
+	public List<String> getSummary() {
+		final List<String> result = new ArrayList<>();
+		new TreeMap<>(totals).forEach((name, entry) -> {
+			final long count = entry.count.sum();
+			final long cpu = entry.cpuNanos.sum();
+			final long allocated = entry.allocatedBytes.sum();
+			result.add(String.format(Locale.US, "%s count=%d cpu=%.3fms (mean %.3fms) allocated=%d bytes (mean %d bytes)", name, count,
+					cpu/1_000_000.0, cpu/1_000_000.0/count, allocated, allocated/count));
+		});
+		return result;
+	}
+
+	/** Clears the recorded measures.
+	 */
+	public void reset() {
+		totals.clear();
+	}
+}
@@ -0,0 +1,136 @@
+package com.fathzer.jchess.uci.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/** The metrics collected by the UCI layer.
+ * <br>All the methods of this class are thread safe and lock-free.
+ */
+public class UCIMetrics {
+	private static final String PREFIX = "jchess_uci_";
+	
+	private final LatencyHistogram search = new LatencyHistogram();
+	private final LatencyHistogram position = new LatencyHistogram();
+	private final LatencyHistogram isReady = new LatencyHistogram();
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder stops = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder nodes = new LongAdder();
+	
+	/** Records the end of a search.
+	 * @param nanos The time elapsed between the go command and the bestmove reply.
+	 * @param nodeCount The number of nodes searched (0 if unknown).
+	 * @param timeout true if the search exceeded its time budget.
+	 */
+	public void searchEnded(long nanos, long nodeCount, boolean timeout) {
+		search.record(nanos);
+		searches.increment();
+		nodes.add(nodeCount);
+		if (timeout) {
+			timeouts.increment();
+		}
+	}
+	
+	/** Records a stop request.
+	 */
+	public void stopped() {
+		stops.increment();
+	}
+	
+	/** Records the processing time of a position command.
+	 * @param nanos The processing time
+	 */
+	public void positionProcessed(long nanos) {
+		position.record(nanos);
+	}
+
+	/** Records the time between a isready command and the readyok reply.
+	 * @param nanos The elapsed time
+	 */
+	public void readyReplied(long nanos) {
+		isReady.record(nanos);
+	}
+
+	public LatencyHistogram getSearch() {
+		return search;
+	}
+
+	public LatencyHistogram getPosition() {
+		return position;
+	}
+
+	public LatencyHistogram getIsReady() {
+		return isReady;
+	}
+
+	public long getSearches() {
+		return searches.sum();
+	}
+
+	public long getStops() {
+		return stops.sum();
+	}
+
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	public long getNodes() {
+		return nodes.sum();
+	}
+	
+	/** Gets a human readable summary of a histogram.
+	 * @param name The histogram's name
+	 * @param histogram The histogram
+	 * @return a String
+	 */
+	public static String toString(String name, LatencyHistogram histogram) {
+		return String.format(Locale.US, "%s count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", name, histogram.getCount(),
+				histogram.getCount()==0 ? 0.0 : toMs(histogram.getSum()/histogram.getCount()), toMs(histogram.getPercentile(0.5)),
+				toMs(histogram.getPercentile(0.9)), toMs(histogram.getPercentile(0.99)), toMs(histogram.getMax()));
+	}
+	
+	private static double toMs(long nanos) {
+		return nanos/1_000_000.0;
+	}
+	
+	/** Gets these metrics in <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus text format</a>.
+	 * @return A String
+	 */
+	public String toPrometheus() {
+		final StringBuilder builder = new StringBuilder();
+		appendHistogram(builder, "search_seconds", "Time from go command to bestmove reply", search);
+		appendHistogram(builder, "position_seconds", "Processing time of position commands", position);
+		appendHistogram(builder, "isready_seconds", "Time from isready command to readyok reply", isReady);
+		appendCounter(builder, "searches_total", "Number of searches", getSearches());
+		appendCounter(builder, "stops_total", "Number of stop requests", getStops());
+		appendCounter(builder, "timeouts_total", "Number of searches that exceeded their time budget", getTimeouts());
+		appendCounter(builder, "nodes_total", "Number of nodes reported by engines", getNodes());
+		return builder.toString();
+	}
+	
+	private static void appendCounter(StringBuilder builder, String name, String help, long value) {
+		appendHeader(builder, name, help, "counter");
+		builder.append(PREFIX).append(name).append(' ').append(value).append('\n');
+	}
+	
+	private static void appendHistogram(StringBuilder builder, String name, String help, LatencyHistogram histogram) {
+		appendHeader(builder, name, help, "histogram");
+		final long[] counts = histogram.getCounts();
+		long cumulated = 0;
+		// The last bucket has no upper bound
+		for (int i = 0; i < counts.length-1; i++) {
+			cumulated += counts[i];
+			builder.append(PREFIX).append(name).append("_bucket{le=\"").append(LatencyHistogram.getUpperBound(i)/1e9).append("\"} ").append(cumulated).append('\n');
+		}
+		cumulated += counts[counts.length-1];
+		builder.append(PREFIX).append(name).append("_bucket{le=\"+Inf\"} ").append(cumulated).append('\n');
+		builder.append(PREFIX).append(name).append("_sum ").append(histogram.getSum()/1e9).append('\n');
+		builder.append(PREFIX).append(name).append("_count ").append(cumulated).append('\n');
+	}
+
+	private static void appendHeader(StringBuilder builder, String name, String help, String type) {
+		builder.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+		builder.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+	}
+}
@@ -1,8 +1,16 @@
 package com.fathzer.jchess.uci.option;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 
+import com.fathzer.jchess.uci.jfr.OptionEvent;
+
 public abstract class Option<T> {
 	static final String DEFAULT = " default ";
 	
@@ -11,8 +19,13 @@ public abstract class Option<T> {
 	}
 	
 	private final String name;
-	private T value;
+	// Values are set by the command thread and deferred changes are applied by the background thread
+	private volatile T value;
 	private final Consumer<T> trigger;  
+	private boolean deferred;
+	private List<Option<?>> dependencies = Collections.emptyList();
+	private volatile boolean pending;
+	private volatile T appliedValue;
 
 	Option(String name, Consumer<T> trigger) {
 		if (name==null || trigger==null) {
@@ -35,12 +48,102 @@ public abstract class Option<T> {
 
 	public abstract void setValue(String value);
 	
+	/** Makes this option deferred.
+	 * <br>The trigger of a deferred option is not called when its value is changed, but later, when {@link #applyPending(Collection)} is called.
+	 * The UCI layer calls it on the next <i>isready</i>, <i>ucinewgame</i> or <i>go</i> command, while no search is running.
+	 * <br>Successive changes are coalesced: The trigger is called only once, with the last value.
+	 * <br>This is useful for options with expensive triggers (hash table size, number of threads, tablebases path, etc...).
+	 * @param dependencies The options whose pending changes should be applied before the changes of this option
+	 * (for instance, the hash table size may depend on the number of threads).
+	 * @return this
+	 */
+	public Option<T> deferred(Option<?>... dependencies) {
+		this.deferred = true;
+		this.dependencies = Arrays.asList(dependencies);
+		this.appliedValue = value;
+		return this;
+	}
+	
+	/** Checks whether this option is deferred.
+	 * @return true if this option is deferred
+	 * @see #deferred(Option...)
+	 */
+	public boolean isDeferred() {
+		return deferred;
+	}
+	
+	/** Checks whether this option has a change not yet applied.
+	 * @return true if the trigger of this deferred option has not been called since its last change.
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+	
 	void setCastedValue(T value) {
+		if (deferred) {
+			synchronized (this) {
+				this.value = value;
+				pending = Type.BUTTON.equals(getType()) || !Objects.equals(appliedValue, value);
+			}
+			return;
+		}
 		final boolean equals = Objects.equals(this.value, value);
 		this.value = value;
 		if (!equals || Type.BUTTON.equals(getType())) {
-			trigger.accept(value);
+			fire(value);
+		}
+	}
+	
+	private void fire(T value) {
+		final OptionEvent event = new OptionEvent();
+		event.begin();
+		trigger.accept(value);
+		if (event.shouldCommit()) {
+			event.name = name;
+			event.value = String.valueOf(value);
+			event.commit();
+		}
+	}
+	
+	/** Applies the pending changes of options.
+	 * <br>Triggers are called in dependency order: The changes of the dependencies of an option are applied before the change of the option.
+	 * <br>This method can be called by another thread than the one that sets the option values.
+	 * @param options The options to apply
+	 * @return true if at least one trigger was called
+	 * @throws IllegalArgumentException if there is a dependency cycle between options
+	 */
+	public static boolean applyPending(Collection<Option<?>> options) {
+		final Set<Option<?>> done = new HashSet<>();
+		boolean result = false;
+		for (Option<?> option : options) {
+			result = option.apply(done, new HashSet<>()) || result;
+		}
+		return result;
+	}
+	
+	private boolean apply(Set<Option<?>> done, Set<Option<?>> visiting) {
+		if (done.contains(this)) {
+			return false;
+		}
+		if (!visiting.add(this)) {
+			throw new IllegalArgumentException("Cyclic dependency on option "+name);
+		}
+		boolean result = false;
+		for (Option<?> dependency : dependencies) {
+			result = dependency.apply(done, visiting) || result;
+		}
+		done.add(this);
+		final T toApply;
+		synchronized (this) {
+			if (!pending) {
+				return result;
+			}
+			pending = false;
+			toApply = value;
+			appliedValue = toApply;
 		}
+		fire(toApply);
+		return true;
 	}
 	
 	public String toUCI() {
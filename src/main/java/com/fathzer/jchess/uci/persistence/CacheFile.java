@@ -0,0 +1,164 @@
+package com.fathzer.jchess.uci.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fathzer.jchess.uci.ThreadFactories;
+
+/** A file where {@link Persistable} objects are saved in order to be reloaded after a process restart.
+ * <br>The file is a versioned binary file made of sections, one per object. When an object is registered, its section is read
+ * from a memory-mapped view of the file, so large structures are not parsed but copied.
+ * <br>The file is written to a temporary file that replaces the previous one when complete, so an interrupted save never corrupts it.
+ * <br>The content of objects that are not registered when the file is saved is lost.
+ */
+public class CacheFile implements AutoCloseable {
+	private static final int MAGIC = 0x4a435543; // JCUC
+	/** The version of the file format. */
+	public static final int VERSION = 1;
+	
+	private final Path path;
+	private final List<Persistable> persistables = new CopyOnWriteArrayList<>();
+	private final Consumer<Exception> logger;
+	private ScheduledExecutorService timer;
+
+	/** Constructor.
+	 * @param path The file's path
+	 * @param logger The consumer of errors that occur when loading or saving objects
+	 */
+	public CacheFile(Path path, Consumer<Exception> logger) {
+		this.path = path;
+		this.logger = logger;
+	}
+	
+	/** Saves the file periodically.
+	 * @param periodSeconds The number of seconds between two saves.
+	 */
+	public synchronized void setAutoSave(long periodSeconds) {
+		if (periodSeconds<=0) {
+			throw new IllegalArgumentException("Period should be strictly positive");
+		}
+		if (timer!=null) {
+			timer.shutdownNow();
+		}
+		timer = Executors.newSingleThreadScheduledExecutor(ThreadFactories.get("uci-cache-file"));
+		timer.scheduleWithFixedDelay(() -> {
+			try {
+				save();
+			} catch (IOException | RuntimeException e) {
+				logger.accept(e);
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/** Registers an object.
+	 * <br>If the file contains a section for this object with the same version, the object is loaded.
+	 * @param persistable The object to register
+	 * @return true if the object was loaded
+	 */
+	public boolean register(Persistable persistable) {
+		persistables.add(persistable);
+		try {
+			return load(persistable);
+		} catch (IOException | RuntimeException e) {
+			logger.accept(e);
+			return false;
+		}
+	}
+	
+	/** Unregisters an object.
+	 * @param persistable The object to unregister
+	 */
+	public void unregister(Persistable persistable) {
+		persistables.remove(persistable);
+	}
+	
+	private synchronized boolean load(Persistable persistable) throws IOException {
+		if (!Files.isRegularFile(path)) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining()<8 || buffer.getInt()!=MAGIC || buffer.getInt()!=VERSION) {
+				throw new IOException(path+" is not a cache file or has an unsupported version");
+			}
+			while (buffer.hasRemaining()) {
+				final byte[] idBytes = new byte[buffer.getShort()];
+				buffer.get(idBytes);
+				final int version = buffer.getInt();
+				final long length = buffer.getLong();
+				final int end = Math.toIntExact(buffer.position()+length);
+				if (persistable.getPersistenceId().equals(new String(idBytes, StandardCharsets.UTF_8)) && persistable.getPersistenceVersion()==version) {
+					final ByteBuffer data = buffer.duplicate();
+					data.limit(end);
+					persistable.load(data.slice().asReadOnlyBuffer());
+					return true;
+				}
+				buffer.position(end);
+			}
+		}
+		return false;
+	}
+	
+	/** Saves all the registered objects.
+	 * @throws IOException if an error occurs
+	 */
+	public synchronized void save() throws IOException {
+		final Path tmp = path.resolveSibling(path.getFileName()+".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			for (Persistable persistable : persistables) {
+				final byte[] id = persistable.getPersistenceId().getBytes(StandardCharsets.UTF_8);
+				out.writeShort(id.length);
+				out.write(id);
+				out.writeInt(persistable.getPersistenceVersion());
+				out.flush();
+				final long lengthPosition = channel.position();
+				out.writeLong(0);
+				persistable.save(out);
+				out.flush();
+				final long end = channel.position();
+				final ByteBuffer length = ByteBuffer.allocate(Long.BYTES).putLong(0, end-lengthPosition-Long.BYTES);
+				channel.write(length, lengthPosition);
+			}
+			out.flush();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/** Stops periodic saves and saves the file.
+	 * @throws UncheckedIOException if the file can't be saved
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (timer!=null) {
+				timer.shutdownNow();
+				timer = null;
+			}
+		}
+		try {
+			save();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
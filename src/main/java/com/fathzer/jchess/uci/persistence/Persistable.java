@@ -0,0 +1,36 @@
+package com.fathzer.jchess.uci.persistence;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** An object whose content can be saved in a {@link CacheFile} and reloaded when the process restarts (a hash table, an analysis cache, etc...).
+ * <br>Engines that implement this interface are automatically registered in the cache file of the UCI layer.
+ * @see CacheFile
+ */
+public interface Persistable {
+	/** Gets the identifier of this object in the cache file.
+	 * @return a non null String
+	 */
+	String getPersistenceId();
+	
+	/** Gets the version of the data format.
+	 * <br>Data saved with another version is ignored.
+	 * @return an int
+	 */
+	int getPersistenceVersion();
+	
+	/** Writes the content of this object.
+	 * <br>This method can be called by the cache file's thread while this object is used, so implementations should be thread safe.
+	 * @param out The output where to write the content
+	 * @throws IOException if writing fails
+	 */
+	void save(DataOutput out) throws IOException;
+	
+	/** Reloads the content of this object.
+	 * @param data The data written by {@link #save(DataOutput)}. It is a read only view of a memory-mapped file, so large structures can
+	 * be bulk copied (for instance using <code>data.asLongBuffer().get(table)</code>). It is only valid during this method call.
+	 * @throws RuntimeException if data is invalid. The error is reported and the object is ignored.
+	 */
+	void load(ByteBuffer data);
+}
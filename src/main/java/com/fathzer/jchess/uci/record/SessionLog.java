@@ -0,0 +1,111 @@
+package com.fathzer.jchess.uci.record;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** A log written by a {@link SessionRecorder}.
+ */
+public class SessionLog {
+	/** A record of the log.
+	 */
+	public static class Entry {
+		private final boolean command;
+		private final long nanos;
+		private final String line;
+		
+		Entry(boolean command, long nanos, String line) {
+			this.command = command;
+			this.nanos = nanos;
+			this.line = line;
+		}
+
+		/** Tests whether this record is a received command.
+		 * @return true if this record is a command, false if it is a reply.
+		 */
+		public boolean isCommand() {
+			return command;
+		}
+
+		/** Gets the record's time.
+		 * @return The number of nanoseconds since the beginning of the session
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/** Gets the record's line.
+		 * @return a String
+		 */
+		public String getLine() {
+			return line;
+		}
+		
+		@Override
+		public String toString() {
+			return (command ? "> " : "< ")+line;
+		}
+	}
+	
+	private final List<Entry> entries;
+	
+	private SessionLog(List<Entry> entries) {
+		this.entries = Collections.unmodifiableList(entries);
+	}
+
+	/** Reads a log.
+	 * @param in The stream to read (it is not closed by this method)
+	 * @return A log
+	 * @throws IOException if the stream can't be read or is not a valid log
+	 */
+	public static SessionLog read(InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt()!=SessionRecorder.MAGIC || data.readInt()!=SessionRecorder.VERSION) {
+			throw new IOException("Not a session log or unsupported version");
+		}
+		final List<Entry> entries = new ArrayList<>();
+		long nanos = 0;
+		while (true) {
+			final long delta;
+			try {
+				delta = readVarLong(data);
+			} catch (EOFException e) {
+				break;
+			}
+			nanos += delta;
+			final int kind = data.readUnsignedByte();
+			if (kind!=SessionRecorder.COMMAND && kind!=SessionRecorder.REPLY) {
+				throw new IOException("Invalid record kind "+kind);
+			}
+			final byte[] bytes = new byte[Math.toIntExact(readVarLong(data))];
+			data.readFully(bytes);
+			entries.add(new Entry(kind==SessionRecorder.COMMAND, nanos, new String(bytes, StandardCharsets.UTF_8)));
+		}
+		return new SessionLog(entries);
+	}
+	
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.readUnsignedByte();
+			result |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Invalid number");
+	}
+
+	/** Gets the records of this log.
+	 * @return an unmodifiable list, in record order
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+}
@@ -0,0 +1,117 @@
+package com.fathzer.jchess.uci.record;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** A recorder of the commands received and the replies sent by a UCI session.
+ * <br>The records are written in a compact binary log: each record is made of the number of nanoseconds since the previous record,
+ * the record's kind (command or reply) and the line, with variable length encoding of numbers.
+ * <br>This log can be read by {@link SessionLog} and replayed by {@link SessionReplay}.
+ * <br>This class is thread safe.
+ */
+public class SessionRecorder implements AutoCloseable {
+	static final int MAGIC = 0x4a435352; // JCSR
+	static final int VERSION = 1;
+	static final int COMMAND = 0;
+	static final int REPLY = 1;
+	
+	private final DataOutputStream out;
+	private final long start;
+	private long last;
+	private boolean closed;
+	
+	/** Constructor.
+	 * @param out The stream where to write the log
+	 * @throws UncheckedIOException if the log header can't be written
+	 */
+	public SessionRecorder(OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		try {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.start = System.nanoTime();
+	}
+	
+	/** Creates a recorder that writes to a file.
+	 * @param path The file's path
+	 * @return a new recorder
+	 * @throws UncheckedIOException if the file can't be created
+	 */
+	public static SessionRecorder to(Path path) {
+		try {
+			return new SessionRecorder(Files.newOutputStream(path));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/** Records a received command.
+	 * <br>The log is flushed, so that commands are not lost if the process is killed.
+	 * @param line The command
+	 */
+	public synchronized void command(String line) {
+		if (closed) {
+			return;
+		}
+		write(COMMAND, line);
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/** Records a sent reply.
+	 * <br>Replies sent after the recorder is closed (by a search that ends after <i>quit</i> for instance) are ignored.
+	 * @param line The reply
+	 */
+	public synchronized void reply(String line) {
+		if (!closed) {
+			write(REPLY, line);
+		}
+	}
+	
+	private void write(int kind, String line) {
+		final long now = System.nanoTime()-start;
+		try {
+			writeVarLong(out, now-last);
+			out.writeByte(kind);
+			final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(out, bytes.length);
+			out.write(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		last = now;
+	}
+	
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
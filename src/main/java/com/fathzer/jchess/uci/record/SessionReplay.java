@@ -0,0 +1,264 @@
+package com.fathzer.jchess.uci.record;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.fathzer.jchess.uci.Engine;
+import com.fathzer.jchess.uci.EngineFactory;
+import com.fathzer.jchess.uci.UCI;
+
+/** A tool that replays a {@link SessionLog} in a {@link UCI} instance and checks that the replies match the recorded ones.
+ * <br>Commands are sent through the {@link UCI#getNextCommand()} override point, in real time (with the recorded delays) or as fast as possible.
+ * Replies are captured through the {@link UCI#out(CharSequence)} override point.
+ * <br>When all the commands are sent, the replay waits for the missing replies (at most {@link #setReplyTimeoutMs(long) the reply timeout}),
+ * then sends <i>quit</i> (unless the log already contains it).
+ * <br>Only the replies accepted by {@link #setReplyFilter(Predicate) the reply filter} are compared. By default, <i>info</i> lines are ignored,
+ * because their content (time, nodes per second, etc...) changes from one run to another.
+ */
+public class SessionReplay {
+	/** The result of a replay.
+	 */
+	public static class Report {
+		private final int commands;
+		private final int expectedReplies;
+		private final int replies;
+		private final List<String> mismatches;
+		private final long recordedNanos;
+		private final long nanos;
+		
+		private Report(int commands, int expectedReplies, int replies, List<String> mismatches, long recordedNanos, long nanos) {
+			this.commands = commands;
+			this.expectedReplies = expectedReplies;
+			this.replies = replies;
+			this.mismatches = Collections.unmodifiableList(mismatches);
+			this.recordedNanos = recordedNanos;
+			this.nanos = nanos;
+		}
+
+		/** Gets the number of commands sent.
+		 * @return an int
+		 */
+		public int getCommands() {
+			return commands;
+		}
+
+		/** Gets the number of recorded replies accepted by the reply filter.
+		 * @return an int
+		 */
+		public int getExpectedReplies() {
+			return expectedReplies;
+		}
+
+		/** Gets the number of replies, accepted by the reply filter, received during the replay.
+		 * @return an int
+		 */
+		public int getReplies() {
+			return replies;
+		}
+
+		/** Gets the differences between the recorded replies and the replayed ones.
+		 * @return A list of messages that describe the differences, empty if replies match.
+		 */
+		public List<String> getMismatches() {
+			return mismatches;
+		}
+
+		/** Gets the duration of the recorded session.
+		 * @return a number of nanoseconds
+		 */
+		public long getRecordedNanos() {
+			return recordedNanos;
+		}
+
+		/** Gets the duration of the replay.
+		 * @return a number of nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+		
+		@Override
+		public String toString() {
+			return "replay: "+commands+" commands, "+replies+"/"+expectedReplies+" replies, "+mismatches.size()+" mismatches in "+
+					TimeUnit.NANOSECONDS.toMillis(nanos)+"ms (recorded in "+TimeUnit.NANOSECONDS.toMillis(recordedNanos)+"ms)";
+		}
+	}
+	
+	private final Supplier<Engine> engineSupplier;
+	private long replyTimeoutMs = 10000;
+	private int maxMismatches = 10;
+	private Predicate<String> replyFilter = reply -> !reply.startsWith("info");
+
+	/** Constructor.
+	 * @param engineSupplier A supplier of the engine to use (a new engine is requested for each replay)
+	 */
+	public SessionReplay(Supplier<Engine> engineSupplier) {
+		this.engineSupplier = engineSupplier;
+	}
+	
+	/** Sets the maximum time to wait for missing replies after the last command.
+	 * @param replyTimeoutMs a number of milliseconds (default is 10s)
+	 */
+	public void setReplyTimeoutMs(long replyTimeoutMs) {
+		this.replyTimeoutMs = replyTimeoutMs;
+	}
+
+	/** Sets the maximum number of mismatches described in reports.
+	 * @param maxMismatches a positive int (default is 10)
+	 */
+	public void setMaxMismatches(int maxMismatches) {
+		this.maxMismatches = maxMismatches;
+	}
+
+	/** Sets the filter of the compared replies.
+	 * <br>Recorded and replayed replies that are not accepted by this filter are ignored.
+	 * @param replyFilter a predicate that returns true for replies to compare (default ignores <i>info</i> lines).
+	 * For instance <code>r -&gt; r.startsWith("bestmove") || r.equals("readyok") || r.equals("uciok")</code> compares only the replies of the commands that expect one.
+	 */
+	public void setReplyFilter(Predicate<String> replyFilter) {
+		this.replyFilter = replyFilter;
+	}
+
+	/** Replays a log.
+	 * @param log The log to replay
+	 * @param realTime true to wait before each command as long as in the recorded session, false to send commands as fast as possible
+	 * @return The replay report
+	 */
+	public Report replay(SessionLog log, boolean realTime) {
+		final List<SessionLog.Entry> commands = log.getEntries().stream().filter(SessionLog.Entry::isCommand).collect(Collectors.toList());
+		final List<String> expected = log.getEntries().stream().filter(e -> !e.isCommand()).map(SessionLog.Entry::getLine).filter(replyFilter).collect(Collectors.toList());
+		final ReplayUCI uci = new ReplayUCI(engineSupplier.get(), commands, expected.size(), realTime);
+		final long start = System.nanoTime();
+		uci.run();
+		final long nanos = System.nanoTime()-start;
+		final List<String> actual = uci.getReplies();
+		final List<String> mismatches = new ArrayList<>();
+		int count = 0;
+		for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+			final String exp = i<expected.size() ? expected.get(i) : null;
+			final String act = i<actual.size() ? actual.get(i) : null;
+			if (exp==null || !exp.equals(act)) {
+				count++;
+				if (mismatches.size()<maxMismatches) {
+					mismatches.add("reply "+(i+1)+": expected "+exp+" got "+act);
+				}
+			}
+		}
+		if (count>mismatches.size()) {
+			mismatches.add((count-mismatches.size())+" more mismatches");
+		}
+		final long recordedNanos = log.getEntries().isEmpty() ? 0 : log.getEntries().get(log.getEntries().size()-1).getNanos();
+		return new Report(uci.sent, expected.size(), actual.size(), mismatches, recordedNanos, nanos);
+	}
+
+	private class ReplayUCI extends UCI {
+		private final Iterator<SessionLog.Entry> commands;
+		private final int expectedReplies;
+		private final boolean realTime;
+		private final List<String> replies = new ArrayList<>();
+		private long start;
+		private int sent;
+		private boolean quitSent;
+		
+		private ReplayUCI(Engine engine, List<SessionLog.Entry> commands, int expectedReplies, boolean realTime) {
+			super(engine);
+			this.commands = commands.iterator();
+			this.expectedReplies = expectedReplies;
+			this.realTime = realTime;
+		}
+
+		@Override
+		protected String getNextCommand() {
+			if (sent==0) {
+				start = System.nanoTime();
+			}
+			if (!commands.hasNext() || quitSent) {
+				waitReplies();
+				return "quit";
+			}
+			final SessionLog.Entry entry = commands.next();
+			if (realTime) {
+				final long delay = entry.getNanos() - (System.nanoTime()-start);
+				if (delay>0) {
+					sleep(delay);
+				}
+			}
+			sent++;
+			if ("quit".equals(entry.getLine()) || "q".equals(entry.getLine())) {
+				// Wait for the replies before leaving
+				quitSent = true;
+				waitReplies();
+			}
+			return entry.getLine();
+		}
+		
+		private void sleep(long nanos) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		private synchronized void waitReplies() {
+			long remaining = replyTimeoutMs;
+			while (replies.size()<expectedReplies && remaining>0) {
+				final long waitStart = System.currentTimeMillis();
+				try {
+					wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				remaining -= System.currentTimeMillis()-waitStart;
+			}
+		}
+
+		@Override
+		protected synchronized void out(CharSequence message) {
+			final String reply = message.toString();
+			if (replyFilter.test(reply)) {
+				replies.add(reply);
+				notifyAll();
+			}
+		}
+		
+		private synchronized List<String> getReplies() {
+			return new ArrayList<>(replies);
+		}
+	}
+	
+	/** Replays a log file.
+	 * <br>The engine is the first {@link EngineFactory} available through the {@link ServiceLoader} mechanism, or the one whose id is the third argument.
+	 * @param args The log file path, then, optionally, <i>realtime</i> or <i>fast</i> (default) and the engine's id.
+	 * @throws IOException if the log can't be read
+	 */
+	@SuppressWarnings("java:S106")
+	public static void main(String[] args) throws IOException {
+		if (args.length==0) {
+			throw new IllegalArgumentException("Usage: SessionReplay logFile [realtime|fast] [engineId]");
+		}
+		final boolean realTime = args.length>1 && "realtime".equals(args[1]);
+		final EngineFactory factory = ServiceLoader.load(EngineFactory.class).stream().map(ServiceLoader.Provider::get)
+				.filter(f -> args.length<3 || f.getId().equals(args[2])).findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("No engine factory found"));
+		final SessionLog log;
+		try (InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+			log = SessionLog.read(in);
+		}
+		final Report report = new SessionReplay(factory).replay(log, realTime);
+		System.out.println(report);
+		report.getMismatches().forEach(System.out::println);
+	}
+}
@@ -0,0 +1,39 @@
+package com.fathzer.jchess.uci;
+
+import java.util.concurrent.ThreadFactory;
+
+/** The factories of the threads used by the UCI layer (background tasks, timers and sessions).
+ * <br>This is the Java 21+ implementation, it uses virtual threads, unless the <i>virtualThreads</i> system property is set to false.
+ */
+public final class ThreadFactories {
+	private static final boolean VIRTUAL = Boolean.parseBoolean(System.getProperty("virtualThreads", "true"));
+
+	private ThreadFactories() {
+		super();
+	}
+
+	/** Checks whether the threads created by this class are virtual threads.
+	 * @return true if threads are virtual.
+	 */
+	public static boolean isVirtual() {
+		return VIRTUAL;
+	}
+	
+	/** Gets a thread factory.
+	 * @param name The prefix of the created threads' names. They are named <i>name</i>-0, <i>name</i>-1, etc...
+	 * @return a thread factory.
+	 */
+	public static ThreadFactory get(String name) {
+		return VIRTUAL ? Thread.ofVirtual().name(name+"-", 0).factory() : Thread.ofPlatform().daemon(false).name(name+"-", 0).factory();
+	}
+	
+	/** Starts a new thread.
+	 * <br>This method can be used to run a UCI session (for instance <code>ThreadFactories.start("session", new UCI(engine))</code>).
+	 * @param name The thread's name
+	 * @param task The task to run
+	 * @return The started thread
+	 */
+	public static Thread start(String name, Runnable task) {
+		return VIRTUAL ? Thread.ofVirtual().name(name).start(task) : Thread.ofPlatform().name(name).start(task);
+	}
+}
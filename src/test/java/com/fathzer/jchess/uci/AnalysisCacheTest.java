@@ -0,0 +1,116 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class AnalysisCacheTest {
+	private static final String FEN = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+	private static final String ENGINE = "engine";
+	
+	private static GoOptions go(String options) {
+		return new GoOptions(Arrays.asList(options.split(" ")));
+	}
+	
+	private static BestMoveReply reply(String move, int depth) {
+		return new BestMoveReply(UCIMove.from(move), null, 1000, depth, 20);
+	}
+
+	@Test
+	void testDepth() {
+		final AnalysisCache cache = new AnalysisCache(10);
+		assertTrue(cache.get(ENGINE, FEN, go("depth 5")).isEmpty());
+		cache.put(ENGINE, FEN, go("depth 6"), reply("e7e5", 6));
+		// Move counters are ignored
+		final BestMoveReply cached = cache.get(ENGINE, "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 5 12", go("depth 5")).get();
+		assertEquals("e7e5", cached.getMove().toString());
+		assertTrue(AnalysisCache.canAnswer(go("depth 5"), cached));
+		assertTrue(AnalysisCache.canAnswer(go("depth 6"), cached));
+		assertFalse(AnalysisCache.canAnswer(go("depth 7"), cached));
+		assertFalse(AnalysisCache.canAnswer(go("infinite"), cached));
+		assertFalse(AnalysisCache.canAnswer(go("depth 5 movetime 1000"), cached));
+		
+		// Shallower results do not replace deeper ones
+		cache.put(ENGINE, FEN, go("depth 4"), reply("c7c5", 4));
+		assertEquals("e7e5", cache.get(ENGINE, FEN, go("depth 3")).get().getMove().toString());
+		// Results with unknown depth are ignored
+		cache.put(ENGINE, FEN, go("infinite"), new BestMoveReply(UCIMove.from("c7c5")));
+		assertEquals("e7e5", cache.get(ENGINE, FEN, go("depth 3")).get().getMove().toString());
+		cache.put(ENGINE, FEN, go("infinite"), reply("c7c5", 10));
+		assertEquals("c7c5", cache.get(ENGINE, FEN, go("depth 3")).get().getMove().toString());
+
+		// Other engine or searchmoves
+		assertTrue(cache.get("other", FEN, go("depth 5")).isEmpty());
+		assertTrue(cache.get(ENGINE, FEN, go("depth 5 searchmoves d7d5")).isEmpty());
+	}
+	
+	@Test
+	void testCapacity() {
+		final AnalysisCache cache = new AnalysisCache(2);
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k w - - 0 1", go("depth 1"), reply("a1a2", 1));
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k b - - 0 1", go("depth 1"), reply("h1h2", 1));
+		// Access first entry, the second becomes the least recently used one
+		assertTrue(cache.get(ENGINE, "8/8/8/8/8/8/8/K6k w - - 0 1", go("depth 1")).isPresent());
+		cache.put(ENGINE, FEN, go("depth 1"), reply("e7e5", 1));
+		assertEquals(2, cache.size());
+		assertTrue(cache.get(ENGINE, "8/8/8/8/8/8/8/K6k b - - 0 1", go("depth 1")).isEmpty());
+		cache.setCapacity(1);
+		assertEquals(1, cache.size());
+		assertTrue(cache.get(ENGINE, FEN, go("depth 1")).isPresent());
+		assertThrows(IllegalArgumentException.class, () -> cache.setCapacity(0));
+	}
+	
+	@Test
+	void testShrink() {
+		final AnalysisCache cache = new AnalysisCache(4);
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k w - - 0 1", go("depth 1"), reply("a1a2", 1));
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k b - - 0 1", go("depth 1"), reply("h1h2", 1));
+		cache.put(ENGINE, FEN, go("depth 1"), reply("e7e5", 1));
+		cache.setSizeRatio(0.5);
+		assertEquals(2, cache.size());
+		assertEquals(4, cache.getCapacity());
+		assertTrue(cache.get(ENGINE, FEN, go("depth 1")).isPresent());
+		cache.setSizeRatio(0.1);
+		assertEquals(1, cache.size());
+		// Cache can grow again
+		cache.setSizeRatio(1.0);
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k w - - 0 1", go("depth 1"), reply("a1a2", 1));
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k b - - 0 1", go("depth 1"), reply("h1h2", 1));
+		assertEquals(3, cache.size());
+	}
+	
+	@Test
+	void testPersistence() throws IOException {
+		final AnalysisCache cache = new AnalysisCache(4);
+		cache.put(ENGINE, "8/8/8/8/8/8/8/K6k w - - 0 1", go("depth 1"), new BestMoveReply(UCIMove.from("a1a2"), null, 0, 1, null));
+		cache.put(ENGINE, FEN, go("depth 3"), new BestMoveReply(Arrays.asList(UCIMove.from("e7e5"), UCIMove.from("g1f3"), UCIMove.from("b8c6")), 1000, 3, -20));
+		// Keys can be longer than 32767 bytes
+		final String longId = ENGINE+"["+"x".repeat(40000)+"]";
+		cache.put(longId, FEN, go("depth 1"), reply("c7c5", 1));
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		cache.save(new DataOutputStream(bytes));
+		
+		final AnalysisCache other = new AnalysisCache(4);
+		other.load(ByteBuffer.wrap(bytes.toByteArray()));
+		assertEquals(3, other.size());
+		final BestMoveReply reply = other.get(ENGINE, FEN, go("depth 2")).get();
+		assertEquals("e7e5", reply.getMove().toString());
+		assertEquals("g1f3", reply.getPonderMove().get().toString());
+		assertEquals("[e7e5, g1f3, b8c6]", reply.getPrincipalVariation().toString());
+		assertEquals(1000, reply.getNodes());
+		assertEquals(3, reply.getDepth());
+		assertEquals(-20, reply.getScore().getAsInt());
+		assertTrue(other.get(ENGINE, "8/8/8/8/8/8/8/K6k w - - 0 1", go("depth 1")).get().getScore().isEmpty());
+		assertEquals("c7c5", other.get(longId, FEN, go("depth 1")).get().getMove().toString());
+		
+		// Truncated data is rejected
+		final byte[] truncated = Arrays.copyOf(bytes.toByteArray(), 20);
+		assertThrows(RuntimeException.class, () -> new AnalysisCache(4).load(ByteBuffer.wrap(truncated)));
+	}
+}
@@ -0,0 +1,46 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class BackgroundTaskManagerTest {
+
+	@Test
+	void testRunWhenIdle() throws InterruptedException {
+		final List<String> events = new CopyOnWriteArrayList<>();
+		try (BackgroundTaskManager manager = new BackgroundTaskManager(e -> events.add(e.toString()))) {
+			// Nothing is running => action is executed immediately
+			manager.runWhenIdle(() -> events.add("idle action"));
+			assertEquals(List.of("idle action"), events);
+			events.clear();
+			
+			final CountDownLatch release = new CountDownLatch(1);
+			final CountDownLatch done = new CountDownLatch(1);
+			assertTrue(manager.doBackground(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				events.add("search");
+			}, () -> events.add("stop")));
+			assertTrue(manager.isRunning());
+			// Another task is refused while the first one is not stopped
+			assertFalse(manager.doBackground(() -> {}, () -> {}));
+			manager.runWhenIdle(() -> events.add("position"));
+			manager.runWhenIdle(done::countDown);
+			assertTrue(events.isEmpty());
+			
+			assertTrue(manager.stop());
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(List.of("stop", "search", "position"), events);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BatchAnalysisTest {
+	private static FakeEngine engine() {
+		// Reply the number of moves as the score
+		return new FakeEngine((engine, params) -> new BestMoveReply(UCIMove.from("a2a3"), null, 100, params.getDepth(), engine.getMoves().size()));
+	}
+
+	@Test
+	void testRead() throws IOException {
+		final String file = "# A comment\n"+
+				"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1\n"+
+				"\n"+
+				"r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - bm Bb5; id \"Spanish\";\n"+
+				"position startpos moves e2e4 e7e5\n"+
+				"fen 8/8/8/8/8/8/8/K6k w - - 0 1 moves a1a2\n";
+		final List<BatchAnalysis.Entry> entries = BatchAnalysis.read(new StringReader(file));
+		assertEquals(4, entries.size());
+		assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", entries.get(0).getPosition().getFEN());
+		assertNull(entries.get(0).getId());
+		assertEquals("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 0 1", entries.get(1).getPosition().getFEN());
+		assertEquals("Spanish", entries.get(1).getId());
+		assertEquals(Position.START_FEN, entries.get(2).getPosition().getFEN());
+		assertEquals(2, entries.get(2).getPosition().getMoves().size());
+		assertEquals(1, entries.get(3).getPosition().getMoves().size());
+		assertEquals(3, entries.get(3).getIndex());
+		
+		final StringReader wrong = new StringReader("not a position");
+		assertThrows(IllegalArgumentException.class, () -> BatchAnalysis.read(wrong));
+	}
+	
+	@Test
+	void testOrdered() throws IOException {
+		final List<BatchAnalysis.Entry> entries = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			entries.add(new BatchAnalysis.Entry(i, null, new Position(Position.START_FEN, Collections.nCopies(i, UCIMove.from("g1f3")))));
+		}
+		final List<String> results = Collections.synchronizedList(new ArrayList<>());
+		final AtomicInteger instances = new AtomicInteger();
+		final BatchAnalysis analysis = new BatchAnalysis(entries, () -> {
+			instances.incrementAndGet();
+			return engine();
+		}, Arrays.asList("depth", "3"), 4, true, false, results::add);
+		assertEquals(20, analysis.get());
+		assertTrue(instances.get()<=4);
+		assertEquals(20, results.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("analysis "+i+" bestmove a2a3 depth 3 score "+i+" nodes 100", results.get(i).substring(0, results.get(i).indexOf(" time ")));
+		}
+	}
+	
+	@Test
+	void testJson() {
+		final BatchAnalysis.Entry entry = new BatchAnalysis.Entry(2, "a \"quoted\" id", new Position(Position.START_FEN, Collections.emptyList()));
+		final BatchAnalysis analysis = new BatchAnalysis(Collections.singletonList(entry), BatchAnalysisTest::engine, Arrays.asList("depth", "3"), 1, false, true, s -> {});
+		final String json = analysis.format(entry, new BestMoveReply(UCIMove.from("e2e4"), UCIMove.from("e7e5"), 0, 5, -3), 12);
+		assertEquals("{\"index\":2,\"id\":\"a \\\"quoted\\\" id\",\"position\":\""+Position.START_FEN+"\",\"bestmove\":\"e2e4\",\"ponder\":\"e7e5\",\"depth\":5,\"score\":-3,\"timeMs\":12}", json);
+	}
+}
@@ -0,0 +1,27 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BenchTest {
+	@Test
+	void test() {
+		// Nodes depends on position and depth
+		final FakeEngine engine = new FakeEngine((e, params) -> new BestMoveReply(UCIMove.from("a2a3"), null, e.getFEN().length()*(long)params.getDepth()));
+		final GoOptions options = new GoOptions();
+		options.setDepth(2);
+		final List<String> lines = new ArrayList<>();
+		final Bench bench = new Bench(engine, Bench.POSITIONS, options, lines::add);
+		final long expected = 2*Bench.POSITIONS.stream().mapToLong(String::length).sum();
+		assertEquals(expected, bench.get().longValue());
+		assertTrue(bench.isNodesReported());
+		assertEquals(Bench.POSITIONS.size(), lines.size());
+		assertEquals(Bench.POSITIONS.size(), engine.getNewGames());
+		// Signature is deterministic
+		assertEquals(expected, new Bench(engine, Bench.POSITIONS, options, s -> {}).get().longValue());
+	}
+}
@@ -0,0 +1,255 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.option.Option;
+import com.fathzer.jchess.uci.option.SpinOption;
+
+class EngineSessionTest {
+	private static class ReportingEngine implements Engine, InfoEmitter {
+		private Consumer<BestMoveReply> listener;
+		private int nodes;
+		private int searches;
+		private GoOptions params;
+		
+		@Override
+		public String getId() {
+			return "reporting";
+		}
+
+		@Override
+		public Option<?>[] getOptions() {
+			return new Option[] {new SpinOption("Threads", t -> {}, 1, 1, 64)};
+		}
+
+		@Override
+		public void setInfoListener(Consumer<BestMoveReply> listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void setStartPosition(String fen) {
+			// Position is ignored
+		}
+
+		@Override
+		public void move(UCIMove move) {
+			// Moves are ignored
+		}
+
+		@Override
+		public LongRunningTask<BestMoveReply> go(GoOptions params) {
+			this.nodes = params.getNodes();
+			this.searches++;
+			this.params = params;
+			return new LongRunningTask<>() {
+				@Override
+				public BestMoveReply get() {
+					// Reports 10000 nodes in 5 steps
+					for (int i = 1; i <= 5; i++) {
+						listener.accept(new BestMoveReply(UCIMove.from("e2e4"), null, i*2000L, i, 0));
+					}
+					return new BestMoveReply(Arrays.asList(UCIMove.from("e2e4"), UCIMove.from("e7e5"), UCIMove.from("g1f3"), UCIMove.from("b8c6")), 10000, 5, 0);
+				}
+			};
+		}
+
+		@Override
+		public String getFEN() {
+			return Position.START_FEN;
+		}
+	}
+	
+	private static class MatingEngine extends ReportingEngine implements RootPreAnalyzer {
+		@Override
+		public Optional<UCIMove> getMateInOne() {
+			return Optional.of(UCIMove.from("d1h5"));
+		}
+
+		@Override
+		public Optional<List<UCIMove>> getLegalMoves() {
+			return Optional.of(Arrays.asList(UCIMove.from("a2a3"), UCIMove.from("b2b3"), UCIMove.from("d1h5")));
+		}
+	}
+	
+	private static class DrawingEngine extends ReportingEngine implements RootPreAnalyzer {
+		@Override
+		public Optional<UCIMove> getDrawClaimingMove() {
+			return Optional.of(UCIMove.from("g1f3"));
+		}
+	}
+	
+	@Test
+	void testTrivialMoves() throws InterruptedException, ExecutionException, TimeoutException {
+		final ReportingEngine engine = new MatingEngine();
+		try (EngineSession session = new EngineSession(engine)) {
+			session.setPosition(Position.START_FEN, Collections.emptyList());
+			assertEquals("a2a3", session.go(new GoOptions(Arrays.asList("movetime", "100", "searchmoves", "a2a3"))).get(5, TimeUnit.SECONDS).getMove().toString());
+			final BestMoveReply mate = session.go(new GoOptions(Arrays.asList("wtime", "1000", "btime", "1000"))).get(5, TimeUnit.SECONDS);
+			assertEquals("d1h5", mate.getMove().toString());
+			assertEquals(1, mate.getDepth());
+			// Only one of the searched moves is legal
+			assertEquals("b2b3", session.go(new GoOptions(Arrays.asList("movetime", "100", "searchmoves", "b2b3", "a7a6"))).get(5, TimeUnit.SECONDS).getMove().toString());
+			assertEquals(0, engine.searches);
+			// Mate is not in searched moves
+			session.go(new GoOptions(Arrays.asList("movetime", "100", "searchmoves", "a2a3", "b2b3"))).get(5, TimeUnit.SECONDS);
+			assertEquals(1, engine.searches);
+			// An illegal searched move is not played
+			session.go(new GoOptions(Arrays.asList("movetime", "100", "searchmoves", "a7a6"))).get(5, TimeUnit.SECONDS);
+			assertEquals(2, engine.searches);
+			// Analysis searches are always performed
+			session.go(new GoOptions(Arrays.asList("depth", "3", "searchmoves", "a2a3"))).get(5, TimeUnit.SECONDS);
+			assertEquals(3, engine.searches);
+		}
+	}
+	
+	@Test
+	void testDrawClaim() throws InterruptedException, ExecutionException, TimeoutException {
+		final ReportingEngine engine = new DrawingEngine();
+		try (EngineSession session = new EngineSession(engine)) {
+			session.setPosition(Position.START_FEN, Collections.emptyList());
+			final BestMoveReply draw = session.go(new GoOptions(Arrays.asList("movetime", "100"))).get(5, TimeUnit.SECONDS);
+			assertEquals("g1f3", draw.getMove().toString());
+			assertEquals(0, draw.getScore().getAsInt());
+			assertEquals(0, engine.searches);
+			// The claiming move is not in searched moves
+			session.go(new GoOptions(Arrays.asList("movetime", "100", "searchmoves", "a2a3", "b2b3"))).get(5, TimeUnit.SECONDS);
+			assertEquals(1, engine.searches);
+		}
+	}
+
+	@Test
+	void testAnalysisCache() throws InterruptedException, ExecutionException, TimeoutException {
+		final ReportingEngine engine = new ReportingEngine();
+		try (EngineSession session = new EngineSession(engine)) {
+			session.setAnalysisCache(new AnalysisCache(10));
+			session.setPosition(Position.START_FEN, Collections.emptyList());
+			final GoOptions depth = new GoOptions(Arrays.asList("depth", "3"));
+			session.go(depth).get(5, TimeUnit.SECONDS);
+			session.go(depth).get(5, TimeUnit.SECONDS);
+			assertEquals(1, engine.searches);
+			// Results are cached with the option values
+			session.setOption("Threads", "2");
+			session.go(depth).get(5, TimeUnit.SECONDS);
+			assertEquals(2, engine.searches);
+			session.setOption("Threads", "1");
+			assertEquals("[e2e4, e7e5, g1f3, b8c6]", session.go(depth).get(5, TimeUnit.SECONDS).getPrincipalVariation().toString());
+			assertEquals(2, engine.searches);
+		}
+	}
+
+	@Test
+	void testCpuBudget() throws InterruptedException, ExecutionException, TimeoutException {
+		final ReportingEngine engine = new ReportingEngine();
+		try (EngineSession session = new EngineSession(engine)) {
+			session.setPosition(Position.START_FEN, Collections.emptyList());
+			session.setMaxThreads(2);
+			session.setOption("Threads", "8");
+			assertEquals(2, session.getOption("Threads").getValue());
+			assertNull(session.getOption("NodesPerSecond"));
+			
+			session.setNodesPerSecond(100000);
+			final GoOptions depth = new GoOptions(Arrays.asList("depth", "5"));
+			final long start = System.nanoTime();
+			session.go(depth).get(5, TimeUnit.SECONDS);
+			// 10000 nodes at 100000 nodes per second
+			assertTrue(System.nanoTime()-start >= 90_000_000L);
+			assertEquals(0, engine.nodes);
+			
+			session.go(new GoOptions(Arrays.asList("wtime", "30000", "btime", "30000", "winc", "1000"))).get(5, TimeUnit.SECONDS);
+			// 30000/30+1000 ms allotted to the move
+			assertEquals(200000, engine.nodes);
+			session.go(new GoOptions(Arrays.asList("movetime", "100", "nodes", "5000"))).get(5, TimeUnit.SECONDS);
+			assertEquals(5000, engine.nodes);
+			// The node limit is set on a copy of the requested options
+			final GoOptions requested = new GoOptions(Arrays.asList("movetime", "100", "searchmoves", "e2e4", "d2d4"));
+			session.go(requested).get(5, TimeUnit.SECONDS);
+			assertEquals("movetime 100 nodes 10000 searchmoves e2e4 d2d4", engine.params.toString());
+			assertEquals(0, requested.getNodes());
+			
+			session.setOption("NodesPerSecond", "50000");
+			session.go(new GoOptions(Arrays.asList("movetime", "1000"))).get(5, TimeUnit.SECONDS);
+			assertEquals(100000, engine.nodes);
+			session.setOption("UCI_LimitStrength", "true");
+			session.go(new GoOptions(Arrays.asList("movetime", "1000"))).get(5, TimeUnit.SECONDS);
+			assertEquals(50000, engine.nodes);
+			assertThrows(IllegalArgumentException.class, () -> session.setOption("NodesPerSecond", "200000"));
+		}
+	}
+	
+	@Test
+	void testInstantReply() throws InterruptedException, ExecutionException, TimeoutException {
+		final ReportingEngine engine = new ReportingEngine();
+		try (EngineSession session = new EngineSession(engine)) {
+			session.setInstantReply(1000, 0);
+			session.setPosition(Position.START_FEN, Collections.emptyList());
+			final GoOptions lowClock = new GoOptions(Arrays.asList("wtime", "500", "btime", "500"));
+			assertEquals("e2e4", session.go(lowClock).get(5, TimeUnit.SECONDS).getMove().toString());
+			assertEquals(1, engine.searches);
+			
+			// Expected position, but clock is not low
+			session.setPosition(Position.START_FEN, Arrays.asList(UCIMove.from("e2e4"), UCIMove.from("e7e5")));
+			session.go(new GoOptions(Arrays.asList("wtime", "5000", "btime", "5000"))).get(5, TimeUnit.SECONDS);
+			assertEquals(2, engine.searches);
+			
+			// Expected position and low clock
+			session.setPosition(Position.START_FEN, Arrays.asList(UCIMove.from("e2e4"), UCIMove.from("e7e5"), UCIMove.from("e2e4"), UCIMove.from("e7e5")));
+			final BestMoveReply reply = session.go(lowClock).get(5, TimeUnit.SECONDS);
+			assertEquals(2, engine.searches);
+			assertEquals("g1f3", reply.getMove().toString());
+			assertEquals("b8c6", reply.getPonderMove().get().toString());
+			assertEquals(3, reply.getDepth());
+			
+			// Unexpected position
+			session.setPosition(Position.START_FEN, Arrays.asList(UCIMove.from("d2d4")));
+			session.go(lowClock).get(5, TimeUnit.SECONDS);
+			assertEquals(3, engine.searches);
+		}
+	}
+	
+	@Test
+	void test() throws InterruptedException, ExecutionException, TimeoutException {
+		try (EngineSession session = new EngineSession(new FakeEngine((engine, params) -> new BestMoveReply(UCIMove.from(engine.getFEN().startsWith("8/") ? "a1a2" : "e2e4"), null, 10, 1, 0)))) {
+			final GoOptions options = new GoOptions();
+			options.setDepth(1);
+			final ExecutionException noPosition = assertThrows(ExecutionException.class, () -> session.go(options).get(1, TimeUnit.SECONDS));
+			assertTrue(noPosition.getCause() instanceof IllegalStateException);
+			
+			session.setPosition(Position.START_FEN, Collections.emptyList());
+			assertEquals("e2e4", session.go(options).get(1, TimeUnit.SECONDS).getMove().toString());
+			
+			final GoOptions infinite = new GoOptions();
+			infinite.getTimeOptions().setInfinite(true);
+			final CompletableFuture<BestMoveReply> search = session.go(infinite);
+			// Position is changed after the search is completed
+			final CompletableFuture<Void> position = session.setPosition("8/8/8/8/8/8/8/K6k w - - 0 1", Collections.emptyList());
+			final ExecutionException working = assertThrows(ExecutionException.class, () -> session.go(options).get(1, TimeUnit.SECONDS));
+			assertTrue(working.getCause() instanceof IllegalStateException);
+			assertFalse(position.isDone());
+			assertTrue(session.stop());
+			assertEquals("e2e4", search.get(1, TimeUnit.SECONDS).getMove().toString());
+			position.get(1, TimeUnit.SECONDS);
+			assertEquals("a1a2", session.go(options).get(1, TimeUnit.SECONDS).getMove().toString());
+			assertEquals(3, session.getMetrics().getSearches());
+			assertEquals(1, session.getMetrics().getStops());
+			
+			// Stops made when the session is closed are not counted
+			final CompletableFuture<BestMoveReply> closed = session.go(infinite);
+			session.close();
+			closed.get(1, TimeUnit.SECONDS);
+			assertEquals(1, session.getMetrics().getStops());
+		}
+	}
+}
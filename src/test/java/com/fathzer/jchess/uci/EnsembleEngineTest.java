@@ -0,0 +1,136 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.EnsembleEngine.Strategy;
+import com.fathzer.jchess.uci.option.Option;
+import com.fathzer.jchess.uci.option.SpinOption;
+
+class EnsembleEngineTest {
+	private static class SeedableEngine extends FakeEngine implements Seedable {
+		private final Option<Integer> hash = new SpinOption("Hash", h -> {}, 16, 1, 1024);
+		private long seed = -1;
+		
+		private SeedableEngine() {
+			// The score of a move is its destination rank
+			super((engine, params) -> {
+				final UCIMove move = params.getMoveToSearch().stream().max((m1, m2) -> m1.getTo().compareTo(m2.getTo())).orElse(UCIMove.from("e2e4"));
+				return new BestMoveReply(move, null, 100, params.getDepth(), move.getTo().charAt(1)-'0');
+			});
+		}
+
+		@Override
+		public Option<?>[] getOptions() {
+			return new Option[] {hash};
+		}
+
+		@Override
+		public void setSeed(long seed) {
+			this.seed = seed;
+		}
+	}
+	
+	private static class FakeFactory implements EngineFactory {
+		private final List<SeedableEngine> built = new ArrayList<>();
+
+		@Override
+		public String getId() {
+			return "fake";
+		}
+
+		@Override
+		public Engine get() {
+			final SeedableEngine engine = new SeedableEngine();
+			built.add(engine);
+			return engine;
+		}
+	}
+	
+	@Test
+	void testSeeded() {
+		final FakeFactory factory = new FakeFactory();
+		final EnsembleEngine engine = new EnsembleEngine(factory, 3, Strategy.SEEDED);
+		assertEquals("fake-ensemble", engine.getId());
+		assertEquals(3, factory.built.size());
+		assertEquals(2, factory.built.get(2).seed);
+		engine.setStartPosition(Position.START_FEN);
+		assertEquals(Position.START_FEN, factory.built.get(1).getFEN());
+		
+		engine.getOptions()[0].setValue("64");
+		final BestMoveReply reply = engine.go(new GoOptions(Arrays.asList("depth", "6"))).get();
+		assertEquals(64, factory.built.get(2).hash.getValue());
+		// The requested depth is kept
+		assertEquals(6, reply.getDepth());
+		assertEquals(300, reply.getNodes());
+		
+		// The engine can be used again after being released
+		engine.release();
+		assertEquals(1, factory.built.get(2).getReleases());
+		assertEquals(300, engine.go(new GoOptions(Arrays.asList("depth", "6"))).get().getNodes());
+		engine.release();
+	}
+
+	@Test
+	void testSearchMoves() {
+		final FakeFactory factory = new FakeFactory();
+		final EnsembleEngine engine = new EnsembleEngine(factory, 2, Strategy.SEARCH_MOVES);
+		engine.setStartPosition(Position.START_FEN);
+		final BestMoveReply reply = engine.go(new GoOptions(Arrays.asList("depth", "6", "searchmoves", "a2a3", "d2d4", "c2c3"))).get();
+		assertEquals("d2d4", reply.getMove().toString());
+		assertEquals(6, reply.getDepth());
+		assertEquals(200, reply.getNodes());
+		// Without searchmoves, root moves are unknown
+		assertEquals("e2e4", engine.go(new GoOptions(Arrays.asList("depth", "6"))).get().getMove().toString());
+	}
+	
+	private static class FailingEngine extends FakeEngine {
+		@Override
+		public LongRunningTask<BestMoveReply> go(GoOptions params) {
+			return new LongRunningTask<>() {
+				@Override
+				public BestMoveReply get() {
+					throw new IllegalArgumentException("failure");
+				}
+			};
+		}
+	}
+	
+	private static EngineFactory factory(Engine... engines) {
+		final Iterator<Engine> iterator = Arrays.asList(engines).iterator();
+		return new EngineFactory() {
+			@Override
+			public String getId() {
+				return "fake";
+			}
+
+			@Override
+			public Engine get() {
+				return iterator.next();
+			}
+		};
+	}
+
+	@Test
+	void testFailure() {
+		// The failing instance runs in the pool, the other one is stopped
+		FakeEngine infinite = new FakeEngine();
+		EnsembleEngine engine = new EnsembleEngine(factory(infinite, new FailingEngine()), 2, Strategy.SEEDED);
+		final LongRunningTask<BestMoveReply> task = engine.go(new GoOptions(Arrays.asList("infinite")));
+		assertTrue(assertThrows(IllegalStateException.class, task::get).getCause() instanceof IllegalArgumentException);
+		engine.release();
+		
+		// The failing instance runs in the current thread, the other one is stopped before the failure is reported
+		infinite = new FakeEngine();
+		engine = new EnsembleEngine(factory(new FailingEngine(), infinite), 2, Strategy.SEEDED);
+		final LongRunningTask<BestMoveReply> other = engine.go(new GoOptions(Arrays.asList("infinite")));
+		assertThrows(IllegalArgumentException.class, other::get);
+		engine.release();
+	}
+}
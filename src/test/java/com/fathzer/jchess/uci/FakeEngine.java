@@ -0,0 +1,128 @@
+package com.fathzer.jchess.uci;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiFunction;
+
+/** An engine for tests.
+ * <br>It records the position it is set to, and replies to searches with a function of itself and the search options.
+ * The reply is computed when the search starts. An infinite search replies when it is stopped.
+ */
+public class FakeEngine implements Engine {
+	private final String id;
+	private final BiFunction<FakeEngine, GoOptions, BestMoveReply> replier;
+	private final List<UCIMove> moves = new ArrayList<>();
+	private String fen;
+	private int newGames;
+	private int searches;
+	private int releases;
+
+	/** Constructor.
+	 * <br>The engine's id is <i>fake</i>, and it always plays e2e4.
+	 */
+	public FakeEngine() {
+		this((engine, params) -> new BestMoveReply(UCIMove.from("e2e4")));
+	}
+
+	/** Constructor.
+	 * <br>The engine's id is <i>fake</i>.
+	 * @param replier The function that computes the reply of a search
+	 */
+	public FakeEngine(BiFunction<FakeEngine, GoOptions, BestMoveReply> replier) {
+		this("fake", replier);
+	}
+
+	/** Constructor.
+	 * @param id The engine's id
+	 * @param replier The function that computes the reply of a search
+	 */
+	public FakeEngine(String id, BiFunction<FakeEngine, GoOptions, BestMoveReply> replier) {
+		this.id = id;
+		this.replier = replier;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public void newGame() {
+		newGames++;
+	}
+
+	@Override
+	public void release() {
+		releases++;
+	}
+
+	@Override
+	public void setStartPosition(String fen) {
+		this.fen = fen;
+		this.moves.clear();
+	}
+
+	@Override
+	public void move(UCIMove move) {
+		moves.add(move);
+	}
+
+	@Override
+	public LongRunningTask<BestMoveReply> go(GoOptions params) {
+		searches++;
+		final BestMoveReply reply = replier.apply(this, params);
+		final CountDownLatch stopped = new CountDownLatch(params.getTimeOptions().isInfinite() ? 1 : 0);
+		return new LongRunningTask<>() {
+			@Override
+			public BestMoveReply get() {
+				try {
+					stopped.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return reply;
+			}
+
+			@Override
+			public void stop() {
+				super.stop();
+				stopped.countDown();
+			}
+		};
+	}
+
+	@Override
+	public String getFEN() {
+		return fen;
+	}
+
+	/** Gets the moves played since the start position.
+	 * @return a list of moves
+	 */
+	public List<UCIMove> getMoves() {
+		return Collections.unmodifiableList(moves);
+	}
+
+	/** Gets the number of calls to {@link #newGame()}.
+	 * @return an int
+	 */
+	public int getNewGames() {
+		return newGames;
+	}
+
+	/** Gets the number of searches started.
+	 * @return an int
+	 */
+	public int getSearches() {
+		return searches;
+	}
+
+	/** Gets the number of calls to {@link #release()}.
+	 * @return an int
+	 */
+	public int getReleases() {
+		return releases;
+	}
+}
@@ -0,0 +1,62 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+class GameHistoryTest {
+	private static class HistoryEngine extends FakeEngine implements GameHistoryAware {
+		private GameHistory history;
+
+		@Override
+		public long getPositionHash() {
+			// Knights go back and forth, position repeats every 4 plies
+			return getMoves().size()%4;
+		}
+
+		@Override
+		public void setGameHistory(GameHistory history) {
+			this.history = history;
+		}
+	}
+
+	@Test
+	void testRing() {
+		final GameHistory history = new GameHistory(3);
+		assertEquals(0, history.size());
+		for (int i = 0; i < 6; i++) {
+			history.add(i);
+		}
+		// Capacity is rounded to 4
+		assertEquals(4, history.size());
+		assertEquals(5, history.get(0));
+		assertEquals(2, history.get(3));
+		assertThrows(IndexOutOfBoundsException.class, () -> history.get(4));
+		history.add(3);
+		assertEquals(2, history.count(3, 100));
+		assertEquals(1, history.count(3, 2));
+		history.clear();
+		assertEquals(0, history.size());
+		assertEquals(0, history.count(3, 100));
+	}
+	
+	@Test
+	void testSession() throws InterruptedException, ExecutionException, TimeoutException {
+		final HistoryEngine engine = new HistoryEngine();
+		try (EngineSession session = new EngineSession(engine)) {
+			assertNotNull(engine.history);
+			session.setPosition(Position.START_FEN, Arrays.asList(UCIMove.from("g1f3"), UCIMove.from("g8f6"), UCIMove.from("f3g1"), UCIMove.from("f6g8"), UCIMove.from("g1f3"))).get(1, TimeUnit.SECONDS);
+			assertEquals(6, engine.history.size());
+			assertEquals(1, engine.history.get(0));
+			assertEquals(0, engine.history.get(1));
+			assertEquals(2, engine.history.count(1, 100));
+			assertEquals(2, engine.history.count(0, 100));
+			assertEquals(1, engine.history.count(0, 3));
+		}
+	}
+}
@@ -93,4 +93,31 @@ class GoOptionsTest {
 		assertThrows(IllegalArgumentException.class, () -> new GoOptions(args));
 		}
 	}
+
+	@Test
+	void toStringTest() {
+		final String command = "wtime 297999 winc 3000 btime 300000 binc 4000 movestogo 12 depth 5 infinite searchmoves e2e4 d2d4";
+		assertEquals(command, new GoOptions(Arrays.asList(command.split(" "))).toString());
+		final GoOptions options = new GoOptions();
+		assertEquals("", options.toString());
+		options.setDepth(8);
+		options.setPonder(true);
+		options.getTimeOptions().setMoveTimeMs(1000);
+		assertEquals("movetime 1000 depth 8 ponder", options.toString());
+		assertThrows(IllegalArgumentException.class, () -> options.setNodes(-1));
+	}
+
+	@Test
+	void copyTest() {
+		final String command = "wtime 297999 winc 3000 btime 300000 binc 4000 movestogo 12 movetime 500 depth 5 nodes 1000 mate 3 infinite ponder searchmoves e2e4 d2d4";
+		final GoOptions options = new GoOptions(Arrays.asList(("unknown "+command).split(" ")));
+		final GoOptions copy = new GoOptions(options);
+		assertEquals(command, copy.toString());
+		assertEquals(Arrays.asList("unknown"), copy.getIgnoredOptions());
+		// The copy is independent of the original
+		copy.getTimeOptions().getWhiteClock().setRemainingMs(1000);
+		copy.getMoveToSearch().clear();
+		copy.setDepth(2);
+		assertEquals(command, options.toString());
+	}
 }
@@ -0,0 +1,29 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class PerftScaleTest {
+
+	@Test
+	void testThreadCounts() {
+		assertEquals(Arrays.asList(1), PerftScale.getThreadCounts(1));
+		assertEquals(Arrays.asList(1,2,4,8), PerftScale.getThreadCounts(8));
+		assertEquals(Arrays.asList(1,2,4,6), PerftScale.getThreadCounts(6));
+	}
+	
+	@Test
+	void testImbalance() {
+		final long[] leaves = {50, 30, 20, 10};
+		assertEquals(1.0, PerftScale.getImbalance(leaves, 1));
+		// 50 | 30+20+10
+		assertEquals(60.0/50, PerftScale.getImbalance(leaves, 2));
+		// 50 | 30 | 20+10
+		assertEquals(50.0/30, PerftScale.getImbalance(leaves, 3));
+		// More threads than root moves
+		assertEquals(5.0, PerftScale.getImbalance(leaves, 8));
+	}
+}
@@ -0,0 +1,30 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.PositionsPerftTest.Plan;
+
+class PositionsPerftTestTest {
+
+	@Test
+	void testPlan() {
+		// Position 1 is expensive, position 4 is skipped
+		final long[] costs = {10, 1000, 20, 10, -1, 30, 5, 0};
+		final Plan plan = PositionsPerftTest.plan(costs, 2);
+		assertEquals(Collections.singletonList(1), plan.getExpensive());
+		// Total cost is 1075, target chunk cost is 1075/32=33
+		final List<List<Integer>> chunks = plan.getChunks();
+		assertEquals(Arrays.asList(Arrays.asList(5, 2), Arrays.asList(0, 3, 6, 7)), chunks);
+		
+		// With one thread, no position is split
+		final Plan single = PositionsPerftTest.plan(costs, 1);
+		assertTrue(single.getExpensive().isEmpty());
+		assertEquals(7, single.getChunks().stream().mapToInt(List::size).sum());
+	}
+}
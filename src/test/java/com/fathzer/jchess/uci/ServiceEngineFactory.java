@@ -0,0 +1,15 @@
+package com.fathzer.jchess.uci;
+
+/** An engine factory declared in META-INF/services, in order to test {@link UCI#loadEngineFactories()}.
+ */
+public class ServiceEngineFactory implements EngineFactory {
+	@Override
+	public String getId() {
+		return "service";
+	}
+
+	@Override
+	public Engine get() {
+		return new FakeEngine(getId(), (engine, params) -> new BestMoveReply(UCIMove.from("d2d4")));
+	}
+}
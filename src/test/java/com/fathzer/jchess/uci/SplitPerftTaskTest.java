@@ -0,0 +1,105 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.SplitPerftTask.Divides;
+import com.fathzer.jchess.uci.SplitPerftTask.SubtreePerft;
+
+class SplitPerftTaskTest {
+	/** A lopsided game tree whose moves are strings.
+	 * <br>The first root move has a lot more children than the others, and some positions have no moves.
+	 */
+	private static class TreePerft implements SubtreePerft<String> {
+		private static List<String> getMoves(List<String> path) {
+			final int count;
+			if (path.isEmpty()) {
+				count = 5;
+			} else if ("m1".equals(path.get(path.size()-1)) && path.size()>1) {
+				count = 0;
+			} else {
+				count = "m0".equals(path.get(0)) ? 7 : 2;
+			}
+			final List<String> moves = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				moves.add("m"+i);
+			}
+			return moves;
+		}
+		
+		private static long getLeaves(List<String> path, int depth, AtomicInteger movesMade) {
+			if (depth==0) {
+				return 1;
+			}
+			long leaves = 0;
+			for (String move : getMoves(path)) {
+				movesMade.incrementAndGet();
+				leaves += getLeaves(play(path, move), depth-1, movesMade);
+			}
+			return leaves;
+		}
+		
+		private static List<String> play(List<String> path, String move) {
+			final List<String> result = new ArrayList<>(path);
+			result.add(move);
+			return result;
+		}
+
+		@Override
+		public Divides<String> divide(List<String> path, int depth) {
+			final Map<String, Long> counts = new LinkedHashMap<>();
+			final AtomicInteger movesMade = new AtomicInteger();
+			for (String move : getMoves(path)) {
+				movesMade.incrementAndGet();
+				counts.put(move, getLeaves(play(path, move), depth-1, movesMade));
+			}
+			return new Divides<>(counts, movesMade.get(), movesMade.get(), false);
+		}
+
+		@Override
+		public void interrupt() {
+			// Divides are too fast to be interrupted
+		}
+
+		@Override
+		public void close() {
+			// Nothing to close
+		}
+	}
+	
+	@Test
+	void test() {
+		for (int depth = 1; depth <= 5; depth++) {
+			// The root-only perft
+			final AtomicInteger movesMade = new AtomicInteger();
+			final Map<String, Long> expected = new LinkedHashMap<>();
+			for (String move : TreePerft.getMoves(new ArrayList<>())) {
+				movesMade.incrementAndGet();
+				expected.put("uci-"+move, TreePerft.getLeaves(TreePerft.play(new ArrayList<>(), move), depth-1, movesMade));
+			}
+			final long expectedLeaves = expected.values().stream().mapToLong(Long::longValue).sum();
+			for (int parallelism = 1; parallelism <= 4; parallelism++) {
+				final AtomicInteger built = new AtomicInteger();
+				final PerftSummary split = new SplitPerftTask<String>(() -> {
+					built.incrementAndGet();
+					return new TreePerft();
+				}, m -> "uci-"+m, depth, parallelism).get();
+				final String context = "depth "+depth+", "+parallelism+" thread(s)";
+				assertEquals(parallelism, built.get(), context);
+				assertFalse(split.isInterrupted(), context);
+				assertEquals(expectedLeaves, split.getNbLeaves(), context);
+				// Same divide, with root moves in the same order
+				assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(split.getDivides().entrySet()), context);
+				// Moves made during the expansion are not counted
+				assertTrue(split.getNbMovesMade()<=movesMade.get(), context);
+			}
+		}
+	}
+}
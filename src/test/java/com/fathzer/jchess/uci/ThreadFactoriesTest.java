@@ -0,0 +1,79 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ThreadFactoriesTest {
+	private static final String JAVA21_CLASS = "META-INF/versions/21/"+ThreadFactories.class.getName().replace('.', '/')+".class";
+
+	/** A class loader that loads the Java 21 implementation of ThreadFactories from the multi-release output.
+	 * <br>Tests run on the class directories, where the JVM ignores multi-release versions.
+	 */
+	private static class Java21Loader extends ClassLoader {
+		private Java21Loader() {
+			super(ThreadFactoriesTest.class.getClassLoader());
+		}
+
+		private Class<?> load(byte[] bytes) {
+			return defineClass(ThreadFactories.class.getName(), bytes, 0, bytes.length);
+		}
+	}
+
+	private static boolean isVirtual(Thread thread) throws IllegalAccessException, InvocationTargetException {
+		try {
+			// Thread.isVirtual does not exist before Java 21
+			return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static void assertRuns(ThreadFactory factory, boolean virtual) throws Exception {
+		final CompletableFuture<Thread> current = new CompletableFuture<>();
+		final Thread thread = factory.newThread(() -> current.complete(Thread.currentThread()));
+		thread.start();
+		assertSame(thread, current.get(5, TimeUnit.SECONDS));
+		assertEquals(virtual, isVirtual(thread));
+		assertEquals("test-0", thread.getName());
+		assertEquals("test-1", factory.newThread(() -> {}).getName());
+	}
+
+	@Test
+	void test() throws Exception {
+		assertRuns(ThreadFactories.get("test"), ThreadFactories.isVirtual());
+		final CompletableFuture<Thread> current = new CompletableFuture<>();
+		final Thread thread = ThreadFactories.start("session", () -> current.complete(Thread.currentThread()));
+		assertSame(thread, current.get(5, TimeUnit.SECONDS));
+		assertEquals("session", thread.getName());
+		assertEquals(ThreadFactories.isVirtual(), isVirtual(thread));
+	}
+
+	@Test
+	void testJava21() throws Exception {
+		final URL resource = getClass().getClassLoader().getResource(JAVA21_CLASS);
+		assumeTrue(resource!=null && Runtime.version().feature()>=21, "Java 21 implementation is not available");
+		final Class<?> java21;
+		try (InputStream in = resource.openStream()) {
+			java21 = new Java21Loader().load(in.readAllBytes());
+		}
+		final boolean virtual = (Boolean) java21.getMethod("isVirtual").invoke(null);
+		assertEquals(!"false".equals(System.getProperty("virtualThreads")), virtual);
+		assertRuns((ThreadFactory) java21.getMethod("get", String.class).invoke(null, "test"), virtual);
+		final Method start = java21.getMethod("start", String.class, Runnable.class);
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final Thread thread = (Thread) start.invoke(null, "session", (Runnable) () -> done.complete(null));
+		done.get(5, TimeUnit.SECONDS);
+		assertEquals("session", thread.getName());
+		assertEquals(virtual, isVirtual(thread));
+	}
+}
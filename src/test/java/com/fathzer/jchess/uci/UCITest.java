@@ -0,0 +1,199 @@
+package com.fathzer.jchess.uci;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.option.Option;
+import com.fathzer.jchess.uci.option.SpinOption;
+import com.fathzer.jchess.uci.persistence.CacheFile;
+
+class UCITest {
+	private static class TestUCI extends UCI {
+		private final List<String> replies = new ArrayList<>();
+		private final List<String> debugs = new ArrayList<>();
+
+		private TestUCI(Engine engine) {
+			super(engine);
+		}
+
+		@Override
+		protected void out(CharSequence message) {
+			synchronized (replies) {
+				replies.add(message.toString());
+			}
+		}
+
+		@Override
+		protected void debug(CharSequence message) {
+			debugs.add(message.toString());
+		}
+	}
+	
+	private static class CountingFactory implements EngineFactory {
+		private final List<FakeEngine> built = new ArrayList<>();
+
+		@Override
+		public String getId() {
+			return "lazy";
+		}
+
+		@Override
+		public Engine get() {
+			final FakeEngine engine = new FakeEngine(getId(), (e, params) -> new BestMoveReply(UCIMove.from("c2c4")));
+			built.add(engine);
+			return engine;
+		}
+	}
+
+	@Test
+	void testEngineSwitch() {
+		final FakeEngine first = new FakeEngine();
+		final CountingFactory factory = new CountingFactory();
+		final TestUCI uci = new TestUCI(first);
+		uci.add(factory);
+		assertTrue(factory.built.isEmpty());
+		uci.doPosition(new String[] {"startpos"});
+		
+		// The factory builds the engine on the first switch only
+		uci.doEngine(new String[] {"lazy"});
+		assertEquals(1, factory.built.size());
+		final FakeEngine lazy = factory.built.get(0);
+		assertEquals(Arrays.asList("engine lazy ok"), uci.replies);
+		assertEquals(1, first.getReleases());
+		assertEquals(Position.START_FEN, lazy.getFEN());
+		uci.doEngine(new String[] {"fake"});
+		assertEquals(1, lazy.getReleases());
+		uci.doEngine(new String[] {"lazy"});
+		assertEquals(1, factory.built.size());
+		assertEquals(2, first.getReleases());
+		
+		uci.doEngine(new String[] {"unknown"});
+		assertEquals("engine unknown is unknown", uci.debugs.get(uci.debugs.size()-1));
+		uci.getSession().close();
+	}
+	
+	@Test
+	void testSwitchRefusedWhileRunning() {
+		final FakeEngine first = new FakeEngine();
+		final CountingFactory factory = new CountingFactory();
+		final TestUCI uci = new TestUCI(first);
+		uci.add(factory);
+		uci.doPosition(new String[] {"startpos"});
+		uci.doGo(new String[] {"infinite"});
+		uci.doEngine(new String[] {"lazy"});
+		assertEquals("Engine is working, it can't be changed", uci.debugs.get(uci.debugs.size()-1));
+		assertTrue(factory.built.isEmpty());
+		assertEquals(0, first.getReleases());
+		uci.doStop(new String[0]);
+		uci.getSession().close();
+	}
+	
+	@Test
+	void testServiceLoader() {
+		final TestUCI uci = new TestUCI(new FakeEngine());
+		uci.loadEngineFactories();
+		uci.doEngine(new String[0]);
+		assertEquals(Arrays.asList("engine fake", "engine service"), uci.replies);
+		// Factories are not registered twice
+		uci.loadEngineFactories();
+		assertEquals("Engine service is already registered", uci.debugs.get(uci.debugs.size()-1));
+		uci.doEngine(new String[] {"service"});
+		assertEquals("engine service ok", uci.replies.get(uci.replies.size()-1));
+		assertEquals("service", uci.getEngine().getId());
+		uci.getSession().close();
+	}
+	
+	@Test
+	void testCacheFile() throws IOException {
+		final Path first = Files.createTempFile("cache", ".bin");
+		final Path second = Files.createTempFile("cache", ".bin");
+		Files.delete(first);
+		Files.delete(second);
+		try {
+			final TestUCI uci = new TestUCI(new FakeEngine());
+			uci.setCacheFile(new CacheFile(first, e -> fail(e.toString())));
+			// The previous file is saved when it is replaced
+			uci.setCacheFile(new CacheFile(second, e -> fail(e.toString())));
+			assertTrue(Files.exists(first));
+			assertFalse(Files.exists(second));
+			uci.setCacheFile(null);
+			assertTrue(Files.exists(second));
+			uci.getSession().close();
+		} finally {
+			Files.deleteIfExists(first);
+			Files.deleteIfExists(second);
+		}
+	}
+	
+	@Test
+	void testBenchRestoresSession() throws InterruptedException {
+		final Option<?>[] options = new Option[] {new SpinOption("Threads", t -> {}, 1, 1, 64), new SpinOption("Hash", h -> {}, 32, 1, 1024)};
+		final FakeEngine engine = new FakeEngine() {
+			@Override
+			public Option<?>[] getOptions() {
+				return options;
+			}
+		};
+		final TestUCI uci = new TestUCI(engine);
+		uci.doPosition(new String[] {"startpos", "moves", "e2e4"});
+		uci.doBench(new String[] {"1", "2", "16"});
+		// Options are changed by the command thread before the bench starts
+		assertEquals(2, uci.getSession().getOption("Threads").getValue());
+		for (int i = 0; i < 500 && uci.getSession().isRunning(); i++) {
+			Thread.sleep(10);
+		}
+		assertFalse(uci.getSession().isRunning());
+		assertEquals(Bench.POSITIONS.get(Bench.POSITIONS.size()-1), engine.getFEN());
+		// Session is restored by the command thread before the next command
+		uci.runWhenIdleAction();
+		assertEquals(1, uci.getSession().getOption("Threads").getValue());
+		assertEquals(32, uci.getSession().getOption("Hash").getValue());
+		assertEquals(Position.START_FEN, engine.getFEN());
+		assertEquals("[e2e4]", engine.getMoves().toString());
+		// Options are also restored when the bench can't start
+		uci.doBench(new String[] {"1", "4", "2048"});
+		assertEquals(1, uci.getSession().getOption("Threads").getValue());
+		uci.getSession().close();
+	}
+
+	@Test
+	void testReadyAfterDeferredOptions() throws InterruptedException {
+		final List<Integer> applied = new ArrayList<>();
+		final Option<?> hash = new SpinOption("Hash", applied::add, 16, 1, 1024).deferred();
+		final FakeEngine engine = new FakeEngine() {
+			@Override
+			public Option<?>[] getOptions() {
+				return new Option[] {hash};
+			}
+		};
+		final TestUCI uci = new TestUCI(engine);
+		uci.doPosition(new String[] {"startpos"});
+		uci.doGo(new String[] {"infinite"});
+		for (int i = 0; i < 500 && engine.getSearches()==0; i++) {
+			Thread.sleep(10);
+		}
+		// Without pending changes, readyok is replied during the search
+		uci.doIsReady(new String[0]);
+		assertEquals(Arrays.asList("readyok"), uci.replies);
+		uci.doSetOption(new String[] {"name", "Hash", "value", "32"});
+		uci.doIsReady(new String[0]);
+		assertEquals(Arrays.asList("readyok"), uci.replies);
+		uci.doStop(new String[0]);
+		for (int i = 0; i < 500 && uci.getSession().isRunning(); i++) {
+			Thread.sleep(10);
+		}
+		synchronized (uci.replies) {
+			assertEquals(Arrays.asList("readyok", "bestmove e2e4", "readyok"), uci.replies);
+		}
+		assertEquals(Arrays.asList(16, 32), applied);
+		uci.getSession().close();
+	}
+}
@@ -0,0 +1,75 @@
+package com.fathzer.jchess.uci.eval;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BatchEvaluatorTest {
+	private static void square(List<Integer> positions, int[] scores) {
+		for (int i = 0; i < positions.size(); i++) {
+			scores[i] = positions.get(i)*positions.get(i);
+		}
+	}
+
+	@Test
+	void testBatches() throws InterruptedException {
+		final AtomicInteger maxBatch = new AtomicInteger();
+		try (BatchEvaluator<Integer> evaluator = new BatchEvaluator<>((p, s) -> {
+			maxBatch.accumulateAndGet(p.size(), Math::max);
+			square(p, s);
+		}, 4, 50, TimeUnit.MILLISECONDS)) {
+			// A lonely position is evaluated after max wait
+			assertEquals(9, evaluator.evaluate(3));
+			
+			final int threads = 8;
+			final CountDownLatch start = new CountDownLatch(1);
+			final AtomicInteger errors = new AtomicInteger();
+			final List<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int base = t*100;
+				final Thread worker = new Thread(() -> {
+					try {
+						start.await();
+						for (int i = 0; i < 20; i++) {
+							if (evaluator.evaluate(base+i)!=(base+i)*(base+i)) {
+								errors.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				worker.start();
+				workers.add(worker);
+			}
+			start.countDown();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			assertEquals(0, errors.get());
+			assertEquals(1+threads*20, evaluator.getEvaluationCount());
+			assertTrue(evaluator.getBatchCount()<evaluator.getEvaluationCount());
+			assertEquals(4, maxBatch.get());
+		}
+	}
+	
+	@Test
+	void testErrors() {
+		final BatchEvaluator<Integer> evaluator = new BatchEvaluator<>((p, s) -> {
+			if (p.contains(0)) {
+				throw new IllegalArgumentException();
+			}
+			square(p, s);
+		}, 2, 0, TimeUnit.MILLISECONDS);
+		assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(0));
+		assertEquals(4, evaluator.evaluate(2));
+		evaluator.close();
+		assertThrows(IllegalStateException.class, () -> evaluator.evaluate(2));
+	}
+}
@@ -0,0 +1,85 @@
+package com.fathzer.jchess.uci.external;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.BestMoveReply;
+import com.fathzer.jchess.uci.GoOptions;
+import com.fathzer.jchess.uci.LongRunningTask;
+import com.fathzer.jchess.uci.UCIMove;
+import com.fathzer.jchess.uci.option.Option;
+
+class ExternalEngineTest {
+	private static List<String> command() throws URISyntaxException {
+		final String classPath = new File(FakeEngineProcess.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		return Arrays.asList(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java", "-cp", classPath, FakeEngineProcess.class.getName());
+	}
+	
+	@Test
+	void testParse() {
+		final Map<String, String> fields = ExternalEngine.parse("option name Eval File type string default <empty>");
+		assertEquals("Eval File", fields.get("name"));
+		assertEquals("string", fields.get("type"));
+		assertEquals("<empty>", fields.get("default"));
+		assertEquals("Solid\nRisky", ExternalEngine.parse("option name Style type combo default Solid var Solid var Risky").get("var"));
+		final BestMoveReply info = ExternalEngine.parseInfo("info depth 12 seldepth 15 score cp -30 nodes 5000 nps 1000 pv g1f3 d7d5 d2d4".split(" "));
+		assertEquals("g1f3", info.getMove().toString());
+		assertEquals("d7d5", info.getPonderMove().get().toString());
+		assertEquals(12, info.getDepth());
+		assertEquals(5000, info.getNodes());
+		assertEquals(-30, info.getScore().getAsInt());
+		assertNull(ExternalEngine.parseInfo("info string hello pv".split(" ")));
+	}
+
+	@Test
+	void testEngine() throws Exception {
+		try (ExternalEngineFactory factory = new ExternalEngineFactory(command(), 1)) {
+			assertEquals("Fake engine", factory.getId());
+			final ExternalEngine engine = (ExternalEngine) factory.get();
+			assertEquals("Nobody", engine.getAuthor());
+			assertTrue(engine.isChess960Supported());
+			final Option<?>[] options = engine.getOptions();
+			assertEquals(3, options.length);
+			assertEquals("option name Hash type spin default 16 min 1 max 33554432", options[0].toUCI());
+			// Options are built once, values set by the user are kept
+			options[0].setValue("64");
+			assertSame(options, engine.getOptions());
+			assertEquals(64, engine.getOptions()[0].getValue());
+			
+			final List<BestMoveReply> infos = new ArrayList<>();
+			engine.setInfoListener(infos::add);
+			engine.setStartPosition("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+			engine.move(UCIMove.from("e2e4"));
+			assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", engine.getFEN());
+			final BestMoveReply reply = engine.go(new GoOptions(Arrays.asList("depth", "3"))).get();
+			assertEquals("e2e4", reply.getMove().toString());
+			assertEquals("e7e5", reply.getPonderMove().get().toString());
+			assertEquals(3, reply.getDepth());
+			assertEquals(1234, reply.getNodes());
+			assertEquals(25, reply.getScore().getAsInt());
+			assertEquals(1, infos.size());
+			
+			final LongRunningTask<BestMoveReply> task = engine.go(new GoOptions(Arrays.asList("infinite")));
+			task.stop();
+			assertEquals("e2e4", task.get().getMove().toString());
+			
+			// The process is returned to the pool and reused by another engine
+			engine.release();
+			assertEquals(1, factory.getPool().getIdleCount());
+			final ExternalEngine other = (ExternalEngine) factory.get();
+			other.setStartPosition("8/8/8/8/8/8/8/K6k w - - 0 1");
+			assertEquals("e2e4", other.go(new GoOptions()).get().getMove().toString());
+			assertEquals(0, factory.getPool().getIdleCount());
+			other.release();
+			assertEquals(1, factory.getPool().getIdleCount());
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.fathzer.jchess.uci.external;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/** A minimal UCI engine launched as an external process by tests.
+ */
+public class FakeEngineProcess {
+	@SuppressWarnings("java:S106")
+	public static void main(String[] args) throws IOException {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		String position = "";
+		for (String line = in.readLine(); line!=null; line = in.readLine()) {
+			if ("uci".equals(line)) {
+				System.out.println("id name Fake engine");
+				System.out.println("id author Nobody");
+				System.out.println("option name Hash type spin default 16 min 1 max 33554432");
+				System.out.println("option name Eval File type string default <empty>");
+				System.out.println("option name Style type combo default Normal var Solid var Normal var Risky");
+				System.out.println("option name UCI_Chess960 type check default false");
+				System.out.println("uciok");
+			} else if ("isready".equals(line)) {
+				System.out.println("readyok");
+			} else if (line.startsWith("setoption ")) {
+				System.out.println("info string "+line);
+			} else if (line.startsWith("position ")) {
+				position = line;
+			} else if (line.startsWith("go")) {
+				System.out.println("info string "+position);
+				System.out.println("info depth 3 score cp 25 nodes 1234 pv e2e4 e7e5");
+				if (line.contains("infinite")) {
+					for (line = in.readLine(); line!=null && !"stop".equals(line); line = in.readLine()) {
+						// Wait for stop
+					}
+				}
+				System.out.println("bestmove e2e4 ponder e7e5");
+			} else if ("quit".equals(line)) {
+				return;
+			}
+			System.out.flush();
+		}
+	}
+}
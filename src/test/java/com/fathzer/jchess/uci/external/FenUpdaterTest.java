@@ -0,0 +1,31 @@
+package com.fathzer.jchess.uci.external;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class FenUpdaterTest {
+
+	@Test
+	void test() {
+		String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+		fen = FenUpdater.play(fen, "e2e4");
+		assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", fen);
+		fen = FenUpdater.play(fen, "g8f6");
+		assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 1 2", fen);
+		
+		// Castling and rights
+		fen = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 3 20";
+		assertEquals("r3k2r/8/8/8/8/8/8/R4RK1 b kq - 4 20", FenUpdater.play(fen, "e1g1"));
+		assertEquals("r3k2r/8/8/8/8/8/8/2KR3R b kq - 4 20", FenUpdater.play(fen, "e1a1"));
+		assertEquals("r3k2R/8/8/8/8/8/8/R3K3 b Qq - 0 20", FenUpdater.play(fen, "h1h8"));
+		assertEquals("r3k2r/8/8/8/8/8/8/1R2K2R b Kkq - 4 20", FenUpdater.play(fen, "a1b1"));
+		
+		// En passant and promotion
+		assertEquals("4k3/8/3P4/8/8/8/8/4K3 b - - 0 30", FenUpdater.play("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 30", "e5d6"));
+		assertEquals("4k2Q/8/8/8/8/8/8/4K3 b - - 0 30", FenUpdater.play("4k3/7P/8/8/8/8/8/4K3 w - - 0 30", "h7h8q"));
+		assertEquals("4k3/8/8/8/8/8/8/4K2n w - - 0 31", FenUpdater.play("4k3/8/8/8/8/8/7p/4K3 b - - 0 30", "h2h1n"));
+		
+		assertThrows(IllegalArgumentException.class, () -> FenUpdater.play("4k3/8/8/8/8/8/8/4K3 w - - 0 1", "a1a2"));
+	}
+}
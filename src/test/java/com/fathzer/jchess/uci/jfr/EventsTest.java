@@ -0,0 +1,83 @@
+package com.fathzer.jchess.uci.jfr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.FakeEngine;
+import com.fathzer.jchess.uci.UCI;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class EventsTest {
+	private static class ScriptedUCI extends UCI {
+		private final Iterator<String> commands = Arrays.asList("position startpos", "go depth 1", "quit").iterator();
+		private final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+
+		private ScriptedUCI() {
+			super(new FakeEngine());
+		}
+
+		@Override
+		protected String getNextCommand() {
+			final String command = commands.next();
+			if ("quit".equals(command)) {
+				// Wait for the end of the search
+				try {
+					assertNotNull(replies.poll(5, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return command;
+		}
+
+		@Override
+		protected void out(CharSequence message) {
+			replies.add(message.toString());
+		}
+	}
+
+	@Test
+	void test() throws IOException {
+		final Path file = Files.createTempFile("uci", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable(CommandEvent.class);
+				recording.enable(PositionEvent.class);
+				recording.enable(SearchEvent.class);
+				recording.start();
+				new ScriptedUCI().run();
+				recording.stop();
+				recording.dump(file);
+			}
+			final Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+					.collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+			final List<String> commands = events.get("com.fathzer.jchess.uci.Command").stream()
+					.sorted(Comparator.comparing(RecordedEvent::getStartTime)).map(e -> e.getString("command")).collect(Collectors.toList());
+			assertEquals(Arrays.asList("position", "go"), commands);
+			assertEquals(1, events.get("com.fathzer.jchess.uci.Position").size());
+			final RecordedEvent search = events.get("com.fathzer.jchess.uci.Search").get(0);
+			assertEquals("fake", search.getString("engine"));
+			assertEquals("e2e4", search.getString("bestMove"));
+			assertFalse(search.getBoolean("stopped"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
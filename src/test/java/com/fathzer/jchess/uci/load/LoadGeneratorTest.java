@@ -0,0 +1,35 @@
+package com.fathzer.jchess.uci.load;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.BestMoveReply;
+import com.fathzer.jchess.uci.FakeEngine;
+import com.fathzer.jchess.uci.UCIMove;
+
+class LoadGeneratorTest {
+	private static FakeEngine engine() {
+		// Knights go back and forth
+		return new FakeEngine((engine, params) -> new BestMoveReply(UCIMove.from(new String[] {"g1f3", "g8f6", "f3g1", "f6g8"}[engine.getMoves().size()%4])));
+	}
+
+	@Test
+	void test() throws InterruptedException {
+		final LoadGenerator generator = new LoadGenerator(LoadGeneratorTest::engine);
+		generator.setGamesPerClient(2);
+		generator.setMovesPerGame(6);
+		generator.setStopProbability(0.5);
+		final LoadGenerator.Report report = generator.run(3);
+		assertEquals(3, report.getClients());
+		assertEquals(3*2*6, report.getSearches());
+		assertEquals(0, report.getForfeits());
+		assertTrue(report.getThroughput()>0);
+		
+		final List<LoadGenerator.Report> reports = generator.sweep(3);
+		assertEquals(3, reports.size());
+		assertEquals(2, reports.get(1).getClients());
+	}
+}
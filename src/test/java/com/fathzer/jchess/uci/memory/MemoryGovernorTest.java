@@ -0,0 +1,90 @@
+package com.fathzer.jchess.uci.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class MemoryGovernorTest {
+
+	@Test
+	void test() {
+		final AtomicReference<Double> pressure = new AtomicReference<>(0.5);
+		final double[] ratio = {1.0};
+		// Every check sees a new collection
+		final AtomicLong collections = new AtomicLong();
+		try (MemoryGovernor governor = new MemoryGovernor(0.8, 0.6, pressure::get, collections::incrementAndGet)) {
+			governor.register(r -> ratio[0] = r);
+			governor.check();
+			assertEquals(1.0, ratio[0]);
+
+			pressure.set(0.9);
+			governor.check();
+			assertEquals(0.5, ratio[0]);
+			governor.check();
+			assertEquals(0.25, ratio[0]);
+			for (int i = 0; i < 10; i++) {
+				governor.check();
+			}
+			assertEquals(MemoryGovernor.MIN_RATIO, ratio[0]);
+			
+			// Between thresholds => No change
+			pressure.set(0.7);
+			governor.check();
+			assertEquals(MemoryGovernor.MIN_RATIO, ratio[0]);
+			
+			// A newly registered object is shrunk immediately
+			final double[] other = {1.0};
+			governor.register(r -> other[0] = r);
+			assertEquals(MemoryGovernor.MIN_RATIO, other[0]);
+
+			pressure.set(0.1);
+			governor.check();
+			assertEquals(MemoryGovernor.MIN_RATIO*2, ratio[0]);
+			for (int i = 0; i < 10; i++) {
+				governor.check();
+			}
+			assertEquals(1.0, ratio[0]);
+			assertEquals(1.0, governor.getSizeRatio());
+		}
+		assertThrows(IllegalArgumentException.class, () -> new MemoryGovernor(0.5, 0.6, () -> 0.0, () -> 0));
+		assertThrows(IllegalArgumentException.class, () -> new MemoryGovernor(1.0, 0.6, () -> 0.0, () -> 0));
+	}
+	
+	@Test
+	void testNoCollection() {
+		final AtomicLong collections = new AtomicLong();
+		try (MemoryGovernor governor = new MemoryGovernor(0.8, 0.6, () -> 0.9, collections::get)) {
+			governor.check();
+			assertEquals(0.5, governor.getSizeRatio());
+			// No collection since the last check => the effect of the shrink is still unknown
+			governor.check();
+			governor.check();
+			assertEquals(0.5, governor.getSizeRatio());
+			collections.incrementAndGet();
+			governor.check();
+			assertEquals(0.25, governor.getSizeRatio());
+		}
+	}
+	
+	@Test
+	void testThresholds() {
+		final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(p -> p.getType()==MemoryType.HEAP && p.isCollectionUsageThresholdSupported() && p.getUsage().getMax()>0).collect(Collectors.toList());
+		try (MemoryGovernor first = new MemoryGovernor(0.8, 0.6, 60000)) {
+			try (MemoryGovernor second = new MemoryGovernor(0.9, 0.6, 60000)) {
+				// The lowest threshold is kept
+				pools.forEach(p -> assertEquals((long)(p.getUsage().getMax()*0.8), p.getCollectionUsageThreshold()));
+			}
+			pools.forEach(p -> assertEquals((long)(p.getUsage().getMax()*0.8), p.getCollectionUsageThreshold()));
+		}
+		pools.forEach(p -> assertEquals(0, p.getCollectionUsageThreshold()));
+	}
+}
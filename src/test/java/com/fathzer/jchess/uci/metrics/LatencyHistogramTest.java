@@ -0,0 +1,52 @@
+package com.fathzer.jchess.uci.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void testBuckets() {
+		assertEquals(0, LatencyHistogram.getBucket(-1));
+		assertEquals(0, LatencyHistogram.getBucket(0));
+		assertEquals(0, LatencyHistogram.getBucket(1024));
+		assertEquals(1, LatencyHistogram.getBucket(1025));
+		assertEquals(1, LatencyHistogram.getBucket(2048));
+		assertEquals(LatencyHistogram.BUCKETS-1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+		for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+			assertEquals(i, LatencyHistogram.getBucket(LatencyHistogram.getUpperBound(i)));
+		}
+	}
+
+	@Test
+	void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000);
+		}
+		histogram.record(1_000_000);
+		assertEquals(100, histogram.getCount());
+		assertEquals(99*1000+1_000_000, histogram.getSum());
+		assertEquals(1_000_000, histogram.getMax());
+		assertEquals(1024, histogram.getPercentile(0.5));
+		assertEquals(1024, histogram.getPercentile(0.99));
+		assertEquals(1_000_000, histogram.getPercentile(1.0));
+	}
+	
+	@Test
+	void testPrometheus() {
+		final UCIMetrics metrics = new UCIMetrics();
+		metrics.searchEnded(2_000_000_000L, 12345, true);
+		metrics.stopped();
+		final String text = metrics.toPrometheus();
+		assertTrue(text.contains("# TYPE jchess_uci_search_seconds histogram\n"));
+		assertTrue(text.contains("jchess_uci_search_seconds_bucket{le=\"+Inf\"} 1\n"));
+		assertTrue(text.contains("jchess_uci_search_seconds_count 1\n"));
+		assertTrue(text.contains("jchess_uci_nodes_total 12345\n"));
+		assertTrue(text.contains("jchess_uci_timeouts_total 1\n"));
+		assertTrue(text.contains("jchess_uci_stops_total 1\n"));
+		assertTrue(text.contains("jchess_uci_position_seconds_count 0\n"));
+	}
+}
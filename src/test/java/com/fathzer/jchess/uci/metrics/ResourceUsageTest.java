@@ -0,0 +1,40 @@
+package com.fathzer.jchess.uci.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ResourceUsageTest {
+	private static volatile Object sink;
+
+	@Test
+	void test() {
+		final ResourceUsage usage = new ResourceUsage();
+		final List<String> names = new ArrayList<>();
+		final List<ResourceUsage.Measure> measures = new ArrayList<>();
+		usage.setListener((name, measure) -> {
+			names.add(name);
+			measures.add(measure);
+		});
+		final ResourceUsage.Sample sample = usage.start();
+		sink = new byte[1_000_000];
+		final ResourceUsage.Measure measure = usage.record("alloc", sample);
+		assertEquals(List.of("alloc"), names);
+		assertSame(measure, measures.get(0));
+		if (measure.getAllocatedBytes()>=0) {
+			assertTrue(measure.getAllocatedBytes()>=1_000_000);
+		}
+		usage.record("alloc", usage.start());
+		usage.record("other", usage.start());
+		final List<String> summary = usage.getSummary();
+		assertEquals(2, summary.size());
+		assertTrue(summary.get(0).startsWith("alloc count=2 "));
+		assertTrue(summary.get(1).startsWith("other count=1 "));
+
+		usage.reset();
+		assertTrue(usage.getSummary().isEmpty());
+	}
+}
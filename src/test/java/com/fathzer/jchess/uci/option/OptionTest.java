@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -110,4 +111,46 @@ class OptionTest {
 		assertThrows(IllegalArgumentException.class, () -> s.setValue(null));
 		assertThrows(IllegalArgumentException.class, () -> s.setValue("8"));
 	}
+
+	@Test
+	void testDeferred() {
+		final StringBuilder calls = new StringBuilder();
+		final SpinOption threads = new SpinOption("Threads", x->calls.append("T"+x), 1, 1, 64);
+		final SpinOption hash = new SpinOption("Hash", x->calls.append("H"+x), 16, 1, 1024);
+		final ButtonOption clear = new ButtonOption("Clear Hash", x->calls.append("C"));
+		hash.deferred(threads);
+		threads.deferred();
+		clear.deferred(hash);
+		// Default values were applied at construction
+		assertEquals("T1H16", calls.toString());
+		calls.setLength(0);
+		
+		hash.setValue("32");
+		hash.setValue("64");
+		clear.setValue(null);
+		threads.setValue("4");
+		assertEquals("", calls.toString());
+		assertTrue(hash.isPending());
+		assertEquals(64, hash.getValue());
+		
+		assertTrue(Option.applyPending(Arrays.asList(clear, hash, threads)));
+		// Changes are coalesced and applied in dependency order
+		assertEquals("T4H64C", calls.toString());
+		assertFalse(hash.isPending());
+		calls.setLength(0);
+		assertFalse(Option.applyPending(Arrays.asList(clear, hash, threads)));
+		
+		// Restoring the applied value cancels the pending change
+		hash.setValue("128");
+		hash.setValue("64");
+		assertFalse(hash.isPending());
+		assertFalse(Option.applyPending(Arrays.asList(hash)));
+		assertEquals("", calls.toString());
+		
+		final SpinOption a = new SpinOption("a", x->{}, 1, 1, 2);
+		final Option<Integer> b = new SpinOption("b", x->{}, 1, 1, 2).deferred(a);
+		a.deferred(b);
+		final List<Option<?>> cyclic = Arrays.asList(a, b);
+		assertThrows(IllegalArgumentException.class, () -> Option.applyPending(cyclic));
+	}
 }
@@ -0,0 +1,88 @@
+package com.fathzer.jchess.uci.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CacheFileTest {
+	private static class Table implements Persistable {
+		private final String id;
+		private final int version;
+		private long[] values;
+		
+		private Table(String id, int version, long... values) {
+			this.id = id;
+			this.version = version;
+			this.values = values;
+		}
+
+		@Override
+		public String getPersistenceId() {
+			return id;
+		}
+
+		@Override
+		public int getPersistenceVersion() {
+			return version;
+		}
+
+		@Override
+		public void save(DataOutput out) throws IOException {
+			for (long value : values) {
+				out.writeLong(value);
+			}
+		}
+
+		@Override
+		public void load(ByteBuffer data) {
+			values = new long[data.remaining()/Long.BYTES];
+			data.asLongBuffer().get(values);
+		}
+	}
+
+	@Test
+	void test() throws IOException {
+		final Path path = Files.createTempFile("cache", ".bin");
+		Files.delete(path);
+		final List<Exception> errors = new ArrayList<>();
+		try {
+			try (CacheFile file = new CacheFile(path, errors::add)) {
+				assertFalse(file.register(new Table("hash", 1, 1, 2, 3)));
+				assertFalse(file.register(new Table("book", 1, 4)));
+			}
+			assertTrue(Files.isRegularFile(path));
+			
+			try (CacheFile file = new CacheFile(path, errors::add)) {
+				final Table book = new Table("book", 1);
+				assertTrue(file.register(book));
+				assertEquals(1, book.values.length);
+				assertEquals(4, book.values[0]);
+				final Table hash = new Table("hash", 1);
+				assertTrue(file.register(hash));
+				assertEquals(3, hash.values.length);
+				assertEquals(3, hash.values[2]);
+				// Version mismatch => data is ignored
+				final Table other = new Table("hash", 2, 5);
+				assertFalse(file.register(other));
+				assertEquals(5, other.values[0]);
+			}
+			assertTrue(errors.isEmpty());
+			
+			Files.write(path, new byte[] {1,2,3,4,5,6,7,8,9});
+			try (CacheFile file = new CacheFile(path, errors::add)) {
+				assertFalse(file.register(new Table("hash", 1)));
+				assertEquals(1, errors.size());
+			}
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
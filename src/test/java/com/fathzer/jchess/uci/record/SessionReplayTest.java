@@ -0,0 +1,61 @@
+package com.fathzer.jchess.uci.record;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fathzer.jchess.uci.FakeEngine;
+
+class SessionReplayTest {
+	private static SessionLog record(String... lines) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (SessionRecorder recorder = new SessionRecorder(bytes)) {
+			for (String line : lines) {
+				if (line.startsWith("< ")) {
+					recorder.reply(line.substring(2));
+				} else {
+					recorder.command(line);
+				}
+			}
+		}
+		return SessionLog.read(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	@Test
+	void test() throws IOException {
+		final SessionLog log = record("isready", "< readyok", "position startpos", "go depth 1", "< bestmove e2e4");
+		final List<SessionLog.Entry> entries = log.getEntries();
+		assertEquals(5, entries.size());
+		assertTrue(entries.get(0).isCommand());
+		assertFalse(entries.get(1).isCommand());
+		assertEquals("readyok", entries.get(1).getLine());
+		assertTrue(entries.get(4).getNanos()>=entries.get(0).getNanos());
+		
+		final SessionReplay replay = new SessionReplay(FakeEngine::new);
+		SessionReplay.Report report = replay.replay(log, false);
+		assertEquals(3, report.getCommands());
+		assertEquals(2, report.getReplies());
+		assertTrue(report.getMismatches().isEmpty());
+		
+		report = replay.replay(record("isready", "< readyok", "position startpos", "go depth 1", "< bestmove d2d4", "quit"), true);
+		assertEquals(4, report.getCommands());
+		assertEquals(1, report.getMismatches().size());
+		assertEquals("reply 2: expected bestmove d2d4 got bestmove e2e4", report.getMismatches().get(0));
+		
+		// info lines are ignored by default
+		report = replay.replay(record("position startpos", "go depth 1", "< info depth 1 time 12 nps 1000", "< bestmove e2e4"), false);
+		assertEquals(1, report.getExpectedReplies());
+		assertEquals("[]", report.getMismatches().toString());
+		
+		// Debug messages are replies
+		replay.setReplyFilter(r -> true);
+		report = replay.replay(record("debug on", "unknown", "< info string unknown command"), false);
+		assertEquals(1, report.getReplies());
+		assertEquals("[]", report.getMismatches().toString());
+	}
+}